@@ -0,0 +1,198 @@
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+// generates the PDF files that the benchmarks run on.
+// the files only depend on the fixed seed, so every machine benchmarks the same documents.
+//   text     text-dense pages in several standard fonts
+//   vector   lines, curves and rectangles
+//   image    many small images
+//   type3    text in a Type3 font, whose glyphs are run as content streams. they never reach showFontGlyph,
+//            so the fixture is only benchmarked end to end, by ExtractionBenchmark
+//   rotated  rotated pages with a crop box that does not start at 0, 0
+public class BenchFixtures {
+
+    static final String[] NAMES = { "text", "vector", "image", "type3", "rotated" };
+    static final int PAGES = 8;
+    static final long SEED = 20180401;
+
+    static final PDFont[] FONTS = { PDType1Font.TIMES_ROMAN, PDType1Font.TIMES_ITALIC, PDType1Font.HELVETICA, PDType1Font.COURIER };
+
+    // generates the fixtures into java.io.tmpdir unless they are there already
+    static Path get(String name) throws IOException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "pdfextract-bench");
+        Path file = dir.resolve(name + ".pdf");
+        if (!Files.exists(file)) {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, name, ".tmp");
+            generate(name, tmp);
+            Files.move(tmp, file);
+        }
+        return file;
+    }
+
+    static void generate(String name, Path file) throws IOException {
+        Random random = new Random(SEED);
+        try (PDDocument doc = new PDDocument()) {
+            for (int i = 0; i < PAGES; i++) {
+                PDPage page = new PDPage(PDRectangle.LETTER);
+                doc.addPage(page);
+                switch (name) {
+                    case "text": textPage(doc, page, random); break;
+                    case "vector": vectorPage(doc, page, random); break;
+                    case "image": imagePage(doc, page, random); break;
+                    case "type3": type3Page(doc, page, random); break;
+                    case "rotated":
+                        page.setRotation(90 * ((i + 1) % 4));
+                        page.setCropBox(new PDRectangle(36, 48, 540, 700));
+                        textPage(doc, page, random);
+                        break;
+                    default: throw new IllegalArgumentException("unknown fixture: " + name);
+                }
+            }
+            doc.save(file.toFile());
+        }
+    }
+
+    static String word(Random random) {
+        StringBuilder s = new StringBuilder();
+        int length = 1 + random.nextInt(9);
+        for (int i = 0; i < length; i++) s.append((char)('a' + random.nextInt(26)));
+        return s.toString();
+    }
+
+    static String line(Random random, int words) {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) s.append(' ');
+            s.append(word(random));
+        }
+        return s.toString();
+    }
+
+    static void textPage(PDDocument doc, PDPage page, Random random) throws IOException {
+        try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+            cs.beginText();
+            cs.newLineAtOffset(50, 750);
+            for (int l = 0; l < 60; l++) {
+                cs.setFont(FONTS[random.nextInt(FONTS.length)], 9 + random.nextInt(3));
+                cs.showText(line(random, 12));
+                cs.newLineAtOffset(0, -11.5f);
+            }
+            cs.endText();
+            cs.addRect(50, 50, 500, 1);
+            cs.fill();
+        }
+    }
+
+    static void vectorPage(PDDocument doc, PDPage page, Random random) throws IOException {
+        try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+            for (int p = 0; p < 400; p++) {
+                float x = random.nextFloat() * 550, y = random.nextFloat() * 750;
+                cs.moveTo(x, y);
+                int segments = 1 + random.nextInt(6);
+                for (int s = 0; s < segments; s++) {
+                    if (random.nextBoolean()) cs.lineTo(random.nextFloat() * 600, random.nextFloat() * 780);
+                    else cs.curveTo(random.nextFloat() * 600, random.nextFloat() * 780, random.nextFloat() * 600,
+                            random.nextFloat() * 780, random.nextFloat() * 600, random.nextFloat() * 780);
+                }
+                cs.stroke();
+            }
+            for (int r = 0; r < 200; r++) {
+                cs.addRect(random.nextFloat() * 550, random.nextFloat() * 750, random.nextFloat() * 40, random.nextFloat() * 40);
+                if (random.nextBoolean()) cs.fill();
+                else cs.fillAndStroke();
+            }
+        }
+    }
+
+    static void imagePage(PDDocument doc, PDPage page, Random random) throws IOException {
+        BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) image.setRGB(x, y, random.nextInt(0xffffff));
+        }
+        PDImageXObject xobject = LosslessFactory.createFromImage(doc, image);
+        try (PDPageContentStream cs = new PDPageContentStream(doc, page)) {
+            for (int i = 0; i < 200; i++) {
+                cs.drawImage(xobject, random.nextFloat() * 550, random.nextFloat() * 750, 8 + random.nextInt(48), 8 + random.nextInt(48));
+            }
+        }
+    }
+
+    // PDPageContentStream cannot encode text of a Type3 font, so font and content stream are built directly
+    static void type3Page(PDDocument doc, PDPage page, Random random) throws IOException {
+        COSDictionary charProcs = new COSDictionary();
+        COSArray differences = new COSArray();
+        differences.add(COSInteger.get('a'));
+        COSArray widths = new COSArray();
+        for (char c = 'a'; c <= 'z'; c++) {
+            String glyph = String.valueOf(c);
+            int width = 400 + (c - 'a') * 10;
+            // a box of the glyph width with a height depending on the letter
+            String proc = width + " 0 0 0 " + width + " 700 d1 50 0 " + (width - 100) + " " + (400 + (c - 'a') * 10) + " re f";
+            PDStream stream = new PDStream(doc);
+            try (OutputStream out = stream.createOutputStream()) {
+                out.write(proc.getBytes(StandardCharsets.US_ASCII));
+            }
+            charProcs.setItem(COSName.getPDFName(glyph), stream);
+            differences.add(COSName.getPDFName(glyph));
+            widths.add(COSInteger.get(width));
+        }
+        COSDictionary encoding = new COSDictionary();
+        encoding.setItem(COSName.TYPE, COSName.ENCODING);
+        encoding.setItem(COSName.DIFFERENCES, differences);
+        COSArray matrix = new COSArray();
+        for (float f : new float[] { 0.001f, 0, 0, 0.001f, 0, 0 }) matrix.add(new COSFloat(f));
+
+        COSDictionary font = new COSDictionary();
+        font.setItem(COSName.TYPE, COSName.FONT);
+        font.setItem(COSName.SUBTYPE, COSName.TYPE3);
+        font.setItem(COSName.FONT_BBOX, new PDRectangle(0, 0, 1000, 1000).getCOSArray());
+        font.setItem(COSName.FONT_MATRIX, matrix);
+        font.setItem(COSName.CHAR_PROCS, charProcs);
+        font.setItem(COSName.ENCODING, encoding);
+        font.setInt(COSName.FIRST_CHAR, 'a');
+        font.setInt(COSName.LAST_CHAR, 'z');
+        font.setItem(COSName.WIDTHS, widths);
+
+        PDResources resources = new PDResources();
+        COSName fontName = resources.add(new PDType3Font(font));
+        page.setResources(resources);
+
+        StringBuilder content = new StringBuilder("BT\n/" + fontName.getName() + " 10 Tf\n50 750 Td\n");
+        for (int l = 0; l < 60; l++) {
+            content.append('(').append(line(random, 12)).append(") Tj\n0 -11.5 Td\n");
+        }
+        content.append("ET\n");
+        PDStream contents = new PDStream(doc);
+        try (OutputStream out = contents.createOutputStream()) {
+            out.write(content.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        page.setContents(contents);
+    }
+
+    // writes every fixture into the given directory
+    public static void main(String[] args) throws IOException {
+        Path dir = Paths.get(args.length > 0 ? args[0] : ".");
+        Files.createDirectories(dir);
+        for (String name : NAMES) generate(name, dir.resolve(name + ".pdf"));
+    }
+}
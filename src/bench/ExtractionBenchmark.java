@@ -0,0 +1,44 @@
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// end-to-end processFile on every fixture, output is discarded
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExtractionBenchmark {
+
+    @Param({ "text", "vector", "image", "type3", "rotated" })
+    String fixture;
+
+    @Param({ "", "-text -bounding -glyph -fontName", "-format binary" })
+    String options;
+
+    Path file;
+    ExtractionPlan plan;
+
+    static final OutputStream NULL = new OutputStream() {
+        @Override
+        public void write(int b) { }
+
+        @Override
+        public void write(byte[] b, int off, int len) { }
+    };
+
+    @Setup
+    public void setup() throws IOException {
+        file = BenchFixtures.get(fixture);
+        plan = ExtractionPlan.parse(options.isEmpty() ? new String[0] : options.split(" "));
+    }
+
+    @Benchmark
+    public void processFile() throws IOException {
+        PDFExtractor.processFile(file, NULL, plan);
+    }
+}
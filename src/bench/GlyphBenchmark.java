@@ -0,0 +1,76 @@
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// the per-glyph hot path, replayed from the glyphs that the first page of a fixture shows.
+// a call per operation is too short to measure, so every operation is a whole page of glyphs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GlyphBenchmark {
+
+    // Type3 glyphs do not go through showFontGlyph
+    @Param({ "text", "rotated" })
+    String fixture;
+
+    PDDocument doc;
+    DocumentContext context;
+    PDFExtractor extractor;
+    final List<Matrix> matrices = new ArrayList<>();
+    final List<PDFont> fonts = new ArrayList<>();
+    int[] codes = new int[0];
+
+    @Setup
+    public void setup() throws IOException {
+        doc = PDDocument.load(BenchFixtures.get(fixture).toFile());
+        PDPage page = doc.getPage(0);
+        context = new DocumentContext(ExtractionPlan.parse(new String[] { "-text", "-bounding", "-glyph", "-fontName" }));
+        List<Integer> codeList = new ArrayList<>();
+        PDFExtractor recorder = new PDFExtractor(page, 1, context.buffer, context) {
+            @Override
+            public void showFontGlyph(Matrix textRenderingMatrix, PDFont font, int code, String unicode, Vector displacement) throws IOException {
+                matrices.add(textRenderingMatrix.clone());
+                fonts.add(font);
+                codeList.add(code);
+                super.showFontGlyph(textRenderingMatrix, font, code, unicode, displacement);
+            }
+        };
+        recorder.processPage(page);
+        codes = codeList.stream().mapToInt(Integer::intValue).toArray();
+        extractor = new PDFExtractor(page, 1, context.buffer, context);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        doc.close();
+    }
+
+    @Benchmark
+    public void showFontGlyph() throws IOException {
+        context.buffer.clear();
+        for (int i = 0; i < codes.length; i++) extractor.showFontGlyph(matrices.get(i), fonts.get(i), codes[i], null, null);
+    }
+
+    @Benchmark
+    public void calculateBounds(Blackhole bh) throws IOException {
+        for (int i = 0; i < codes.length; i++) bh.consume(extractor.calculateBounds(matrices.get(i), fonts.get(i), codes[i]));
+    }
+
+    // the glyph bounds cache is warm after setup, as it is for all but the first occurrence of a glyph
+    @Benchmark
+    public void calculateGlyphBounds(Blackhole bh) throws IOException {
+        for (int i = 0; i < codes.length; i++) bh.consume(extractor.calculateGlyphBounds(matrices.get(i), fonts.get(i), codes[i]));
+    }
+}
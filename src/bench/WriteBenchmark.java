@@ -0,0 +1,62 @@
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+// line and word grouping and encoding of one extracted page
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WriteBenchmark {
+
+    @Param({ "text", "vector", "image", "rotated" })
+    String fixture;
+
+    PageBuffer buffer;
+    TsvWriter tsv;
+    BinaryWriter binary;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    static final Writer NULL = new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) { }
+
+        @Override
+        public void flush() { }
+
+        @Override
+        public void close() { }
+    };
+
+    @Setup
+    public void setup() throws IOException {
+        ExtractionPlan plan = ExtractionPlan.parse(new String[] { "-text", "-draw", "-image", "-bounding", "-glyph", "-fontName" });
+        DocumentContext context = new DocumentContext(plan);
+        try (PDDocument doc = PDDocument.load(BenchFixtures.get(fixture).toFile())) {
+            PDPage page = doc.getPage(0);
+            new PDFExtractor(page, 1, context.buffer, context).processPage(page);
+        }
+        buffer = context.buffer;
+        tsv = new TsvWriter(NULL, plan);
+        binary = new BinaryWriter(bytes, plan);
+    }
+
+    @Benchmark
+    public void tsv() throws IOException {
+        tsv.writePage(buffer);
+    }
+
+    @Benchmark
+    public int binary() throws IOException {
+        bytes.reset();
+        binary.writePage(buffer);
+        return bytes.size();
+    }
+}
@@ -0,0 +1,16 @@
+#!/bin/sh
+# compiles and runs the JMH benchmarks in src/bench.
+# LIB is a directory with the PDFBox jars and the JMH jars (jmh-core, jmh-generator-annprocess, jopt-simple, commons-math3).
+# throughput and allocation (-prof gc) are written as JSON to bench-results/<pdfbox jar>.json,
+# so runs against different PDFBox versions can be diffed.
+# further arguments are passed to JMH, e.g. a benchmark regex or -p fixture=text
+set -e
+LIB=${LIB:?LIB must point to the directory with the PDFBox and JMH jars}
+ROOT=$(cd "$(dirname "$0")/../.." && pwd)
+CLASSES=$(mktemp -d)
+trap 'rm -rf "$CLASSES"' EXIT
+
+javac -encoding UTF-8 -d "$CLASSES" -cp "$LIB/*" "$ROOT"/src/main/*.java "$ROOT"/src/bench/*.java
+VERSION=$(basename "$(ls "$LIB"/pdfbox-[0-9]*.jar | head -n 1)" .jar)
+mkdir -p "$ROOT/bench-results"
+java -cp "$CLASSES:$LIB/*" org.openjdk.jmh.Main -prof gc -rf json -rff "$ROOT/bench-results/$VERSION.json" "$@"
@@ -0,0 +1,197 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// reads the PDF entries of a .zip, .tar, .tar.gz or .tgz archive one after another, without unpacking it to disk.
+// an entry is read into memory as a whole, because PDF needs random access; other entries are skipped.
+public class ArchiveReader implements Closeable {
+
+    static final int BLOCK = 512;
+
+    final InputStream in;
+    final ZipInputStream zip; // null for tar
+
+    public ArchiveReader(Path path, int bufferSize) throws IOException {
+        String name = path.getFileName().toString().toLowerCase();
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), bufferSize);
+        if (name.endsWith(".gz") || name.endsWith(".tgz")) in = new BufferedInputStream(new GZIPInputStream(in, bufferSize), bufferSize);
+        this.zip = name.endsWith(".zip") ? new ZipInputStream(in) : null;
+        this.in = zip != null ? zip : in;
+    }
+
+    static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    // the next PDF entry, or null at the end of the archive
+    public Entry next() throws IOException {
+        while (true) {
+            String name;
+            long size;
+            if (zip != null) {
+                ZipEntry entry = zip.getNextEntry();
+                if (entry == null) return null;
+                if (entry.isDirectory() || !isPdf(entry.getName())) continue;
+                name = entry.getName();
+                size = entry.getSize();
+            }
+            else {
+                TarHeader header = nextTarHeader();
+                if (header == null) return null;
+                if (!isPdf(header.name)) {
+                    skipTarData(header.size);
+                    continue;
+                }
+                name = header.name;
+                size = header.size;
+            }
+            if (size > Integer.MAX_VALUE - 8) throw new IOException("entry too large: " + name);
+            byte[] data;
+            if (size >= 0) {
+                data = new byte[(int)size];
+                new DataInputStream(in).readFully(data);
+                if (zip == null) skipFully(padding(size));
+            }
+            else {
+                // a zip entry with its size after the data
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+                data = out.toByteArray();
+            }
+            return new Entry(name, data);
+        }
+    }
+
+    static boolean isPdf(String name) { return name.toLowerCase().endsWith(".pdf"); }
+
+    // header of the next regular file. GNU long names and pax paths are applied to the file that follows them.
+    TarHeader nextTarHeader() throws IOException {
+        byte[] block = new byte[BLOCK];
+        String longName = null;
+        while (true) {
+            if (!readBlock(block)) return null;
+            if (isZero(block)) return null; // end of archive
+            String name = string(block, 0, 100);
+            String prefix = string(block, 257, 6).startsWith("ustar") ? string(block, 345, 155) : "";
+            if (!prefix.isEmpty()) name = prefix + "/" + name;
+            long size = number(block, 124, 12);
+            byte type = block[156];
+            if (type == 'L' || type == 'x') {
+                byte[] data = new byte[(int)size];
+                new DataInputStream(in).readFully(data);
+                skipFully(padding(size));
+                if (type == 'L') longName = string(data, 0, data.length);
+                else {
+                    String path = paxPath(data);
+                    if (path != null) longName = path;
+                }
+                continue;
+            }
+            if (longName != null) {
+                name = longName;
+                longName = null;
+            }
+            if (type == '0' || type == 0) return new TarHeader(name, size);
+            skipTarData(size);
+        }
+    }
+
+    // records of "<length> <key>=<value>\n"
+    static String paxPath(byte[] data) {
+        String records = new String(data, StandardCharsets.UTF_8);
+        int i = 0;
+        while (i < records.length()) {
+            int space = records.indexOf(' ', i);
+            if (space < 0) break;
+            int length = Integer.parseInt(records.substring(i, space));
+            String record = records.substring(space + 1, i + length - 1);
+            if (record.startsWith("path=")) return record.substring(5);
+            i += length;
+        }
+        return null;
+    }
+
+    boolean readBlock(byte[] block) throws IOException {
+        int n = 0;
+        while (n < BLOCK) {
+            int r = in.read(block, n, BLOCK - n);
+            if (r < 0) {
+                if (n == 0) return false;
+                throw new EOFException("truncated tar header");
+            }
+            n += r;
+        }
+        return true;
+    }
+
+    void skipTarData(long size) throws IOException {
+        skipFully(size + padding(size));
+    }
+
+    void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new EOFException();
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    static long padding(long size) { return (BLOCK - size % BLOCK) % BLOCK; }
+
+    static boolean isZero(byte[] block) {
+        for (byte b : block) if (b != 0) return false;
+        return true;
+    }
+
+    static String string(byte[] b, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && b[end] != 0) end++;
+        return new String(b, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // octal, or big-endian binary if the high bit of the first byte is set (sizes of 8GB and more)
+    static long number(byte[] b, int offset, int length) {
+        if ((b[offset] & 0x80) != 0) {
+            long value = 0;
+            for (int i = offset + 1; i < offset + length; i++) value = value << 8 | (b[i] & 0xff);
+            return value;
+        }
+        String s = string(b, offset, length).trim();
+        return s.isEmpty() ? 0 : Long.parseLong(s, 8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    static class TarHeader {
+        final String name;
+        final long size;
+
+        TarHeader(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+    }
+
+    public static class Entry {
+        final String name;
+        final byte[] data;
+
+        Entry(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+import java.io.Closeable;
+
+// extracts many documents and writes their outputs; close() waits for the submitted ones.
+// processed documents are printed to stdout in submission order, failures to stderr.
+public interface Batch extends Closeable {
+
+    void submit(DocumentSource source) throws InterruptedException;
+
+    interface Listener {
+        // the document is extracted, skipped or failed, on the thread that worked on it and in any order
+        default void extracted(DocumentSource source) { }
+
+        // every submitted document in submission order, on the thread that reports them, once its output is committed
+        // or skipped, or it failed
+        void reported(DocumentSource source, boolean failed);
+    }
+}
@@ -0,0 +1,132 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// where the outputs of a batch go: next to each file (gzip-compressed with -gzip), or into one zip archive.
+// an output is written to a Target, which is committed when the document is done and aborted if it failed,
+// so an output is never partial. commits are expected in the order the files are reported.
+public class BatchOutput implements Closeable {
+
+    static final String PROCESS = ManagementFactory.getRuntimeMXBean().getName(); // pid@host
+
+    final ExtractionPlan plan;
+    final Manifest manifest; // may be null
+    final Path archivePath; // null if every file has its own output
+    final ZipOutputStream archive;
+
+    public BatchOutput(ExtractionPlan plan, Manifest manifest, Path archivePath) throws IOException {
+        this.plan = plan;
+        this.manifest = manifest;
+        this.archivePath = archivePath;
+        // written to a temporary file that is renamed by close(), like the outputs of single files
+        this.archive = archivePath == null ? null : new ZipOutputStream(new BufferedOutputStream(
+                new FileOutputStream(archivePath + ".tmp"), PDFExtractor.bufferSize));
+    }
+
+    String extension() { return plan.binary ? "bin" : "txt"; }
+
+    // the target for the output of source, or null if its output is up to date
+    Target open(DocumentSource source) throws IOException {
+        if (archive != null) return new EntryTarget(source);
+        Path output = Paths.get(source.path + extension() + (PDFExtractor.gzip ? ".gz" : ""));
+        Manifest.Entry entry = null;
+        if (manifest != null) {
+            entry = manifest.check(source.path, output);
+            if (entry == null) return null;
+        }
+        return new FileTarget(source, output, entry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (archive == null) return;
+        archive.close();
+        Files.move(Paths.get(archivePath + ".tmp"), archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    abstract static class Target {
+        OutputStream out;
+
+        // ends writing, e.g. on the thread that wrote the output
+        abstract void finish() throws IOException;
+
+        // makes the output visible
+        abstract void commit() throws IOException;
+
+        abstract void abort();
+    }
+
+    // a temporary file next to the output that is renamed by commit()
+    class FileTarget extends Target {
+        final DocumentSource source;
+        final Path output;
+        final Path tmp;
+        final Manifest.Entry entry;
+        GZIPOutputStream gzip;
+
+        FileTarget(DocumentSource source, Path output, Manifest.Entry entry) throws IOException {
+            this.source = source;
+            this.output = output;
+            // of this process, another one may write the same output after taking over a claim of the ledger
+            this.tmp = output.resolveSibling(output.getFileName() + "." + PROCESS + ".tmp");
+            this.entry = entry;
+            out = new BufferedOutputStream(new FileOutputStream(tmp.toFile()), PDFExtractor.bufferSize);
+            if (PDFExtractor.gzip) out = gzip = new GZIPOutputStream(out, PDFExtractor.bufferSize);
+        }
+
+        @Override
+        void finish() throws IOException {
+            if (gzip != null) gzip.finish();
+            out.close();
+        }
+
+        @Override
+        void commit() throws IOException {
+            Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (manifest != null) manifest.record(source.path, entry);
+        }
+
+        @Override
+        void abort() {
+            try {
+                out.close();
+                Files.deleteIfExists(tmp);
+            }
+            catch (IOException e) { }
+        }
+    }
+
+    // an entry of the archive, which is buffered until commit() because a zip entry cannot be taken back
+    class EntryTarget extends Target {
+        final DocumentSource source;
+
+        EntryTarget(DocumentSource source) {
+            this.source = source;
+            out = new ByteArrayOutputStream();
+        }
+
+        @Override
+        void finish() { }
+
+        @Override
+        void commit() throws IOException {
+            synchronized (archive) {
+                archive.putNextEntry(new ZipEntry(source.name + extension()));
+                ((ByteArrayOutputStream)out).writeTo(archive);
+                archive.closeEntry();
+            }
+            out = null;
+        }
+
+        @Override
+        void abort() {
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.*;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+
+// runs processFile for many files on a fixed worker pool.
+// files are reported in the order they were submitted, whatever order they finish in.
+// with a manifest, files whose output is up to date are skipped and not reported.
+// outputs are committed by the reporter, so the entries of an output archive are in submission order.
+public class BatchProcessor implements Batch {
+
+    final ExtractionPlan plan;
+    final BatchOutput output;
+    final Batch.Listener listener; // may be null
+    int skipped = 0;
+    final ExecutorService executor;
+    final Semaphore slots; // bounds files that are queued, running or waiting to be reported
+    final BlockingQueue<Job> pending = new LinkedBlockingQueue<>();
+    final Job endOfInput = new Job(null, null);
+    final Thread reporter;
+
+    public BatchProcessor(ExtractionPlan plan, int threads, int queueSize) throws IOException {
+        this(plan, threads, queueSize, new BatchOutput(plan, null, null));
+    }
+
+    public BatchProcessor(ExtractionPlan plan, int threads, int queueSize, BatchOutput output) {
+        this(plan, threads, queueSize, output, null);
+    }
+
+    public BatchProcessor(ExtractionPlan plan, int threads, int queueSize, BatchOutput output, Batch.Listener listener) {
+        this.plan = plan;
+        this.output = output;
+        this.listener = listener;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.slots = new Semaphore(threads + queueSize);
+        this.reporter = new Thread(this::report, "batch-reporter");
+        this.reporter.start();
+    }
+
+    public void submit(Path file) throws InterruptedException {
+        submit(new DocumentSource(file));
+    }
+
+    @Override
+    public void submit(DocumentSource source) throws InterruptedException {
+        slots.acquire();
+        pending.put(new Job(source, executor.submit(() -> processFile(source))));
+    }
+
+    // the finished output to commit, or null if it is up to date
+    BatchOutput.Target processFile(DocumentSource source) throws IOException {
+        try {
+            BatchOutput.Target target = output.open(source);
+            if (target == null) return null;
+            try {
+                PDFExtractor.processFile(source, target.out, plan);
+                target.finish();
+                return target;
+            }
+            catch (IOException | RuntimeException e) {
+                target.abort();
+                throw e;
+            }
+        }
+        finally {
+            if (listener != null) listener.extracted(source);
+        }
+    }
+
+    void report() {
+        try {
+            while (true) {
+                Job job = pending.take();
+                if (job == endOfInput) break;
+                boolean failed = false;
+                try {
+                    BatchOutput.Target target = job.result.get();
+                    if (target == null) skipped++;
+                    else {
+                        target.commit();
+                        System.out.println(job.source);
+                    }
+                }
+                catch (ExecutionException e) {
+                    // one broken file must not stop the batch
+                    System.err.println(job.source + ": " + e.getCause());
+                    failed = true;
+                }
+                catch (IOException e) {
+                    System.err.println(job.source + ": " + e);
+                    failed = true;
+                }
+                slots.release();
+                if (listener != null) listener.reported(job.source, failed);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the output is not closed, it may be shared
+    @Override
+    public void close() throws IOException {
+        try {
+            pending.put(endOfInput);
+            reporter.join();
+            if (skipped > 0) System.err.println(skipped + " unchanged files skipped");
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    static class Job {
+        final DocumentSource source;
+        final Future<BatchOutput.Target> result;
+
+        Job(DocumentSource source, Future<BatchOutput.Target> result) {
+            this.source = source;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// reads the format written by BinaryWriter.
+// main converts a binary file back to the TSV output, e.g. to verify it against a TSV run.
+public class BinaryReader implements Closeable {
+
+    public static void main(String[] args) throws IOException {
+        try (BinaryReader reader = new BinaryReader(new BufferedInputStream(Files.newInputStream(Paths.get(args[0]))));
+             Writer w = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"))) {
+            TsvWriter tsv = new TsvWriter(w, reader.plan);
+            PageBuffer page;
+            while ((page = reader.next()) != null) tsv.writePage(page, reader.breaks);
+            tsv.end();
+        }
+    }
+
+    final DataInputStream input;
+    final ExtractionPlan plan;
+    final PageBuffer page = new PageBuffer();
+    // ids in page of the strings of the dictionary; page is reused, so they hold for the whole file
+    int[] dictionary = new int[1024];
+    int dictionarySize = 0;
+    byte[] kinds = new byte[1024];
+    // of the texts of the last page, read from the file without text boxes
+    byte[] breaks = new byte[1024];
+
+    public BinaryReader(InputStream input) throws IOException {
+        this.input = new DataInputStream(input);
+        byte[] magic = new byte[BinaryWriter.MAGIC.length];
+        this.input.readFully(magic);
+        if (!Arrays.equals(magic, BinaryWriter.MAGIC)) throw new IOException("not a binary pdfextract file");
+        int version = this.input.readUnsignedByte();
+        if (version != BinaryWriter.VERSION) throw new IOException("unsupported version: " + version);
+        int flags = this.input.readUnsignedByte();
+        // the image directory is not in the file, only whether image files are
+        this.plan = new ExtractionPlan((flags & 1) != 0, (flags & 1 << 1) != 0, (flags & 1 << 2) != 0,
+                (flags & 1 << 3) != 0, (flags & 1 << 4) != 0, (flags & 1 << 5) != 0, true, PageSet.ALL, Limits.NONE,
+                (flags & 1 << 6) != 0 ? "" : null);
+    }
+
+    // returns null after the last page. a file without trailer is reported as truncated.
+    // the returned buffer is reused by the next call.
+    public PageBuffer next() throws IOException {
+        int tag = input.read();
+        if (tag == BinaryWriter.END) return null;
+        if (tag != BinaryWriter.PAGE) throw new EOFException("truncated file");
+        input.readInt(); // block length, only needed to skip pages
+
+        PageBuffer p = page;
+        p.clear();
+        p.pageIndex = readVarint(input);
+        int base = readVarint(input);
+        if (base > dictionarySize) throw new IOException("dictionary of " + dictionarySize + " strings continued at " + base);
+        int added = readVarint(input);
+        dictionarySize = base;
+        if (dictionary.length < base + added) dictionary = Arrays.copyOf(dictionary, Math.max(base + added, dictionary.length * 2));
+        for (int i = 0; i < added; i++) {
+            byte[] bytes = new byte[readVarint(input)];
+            input.readFully(bytes);
+            dictionary[dictionarySize++] = p.intern(new String(bytes, StandardCharsets.UTF_8));
+        }
+        int size = readVarint(input);
+        if (kinds.length < size) kinds = new byte[Math.max(size, kinds.length * 2)];
+        input.readFully(kinds, 0, size);
+
+        int n = readVarint(input);
+        p.ensureTexts(n);
+        p.textCount = n;
+        for (int i = 0; i < n; i++) p.unicode[i] = dictionary[readVarint(input)];
+        for (int i = 0; i < n; i++) p.font[i] = plan.fontName ? string(readVarint(input)) : -1;
+        final int s = PageBuffer.TEXT_STRIDE;
+        Arrays.fill(p.textBoxes, 0, n * s, 0);
+        if (plan.bounding) {
+            for (int c = 0; c < 4; c++) {
+                for (int i = 0; i < n; i++) p.textBoxes[i * s + c] = input.readFloat();
+            }
+        }
+        else {
+            if (breaks.length < n) breaks = new byte[Math.max(n, breaks.length * 2)];
+            input.readFully(breaks, 0, n);
+        }
+        if (plan.glyph) {
+            for (int c = 4; c < 8; c++) {
+                for (int i = 0; i < n; i++) p.textBoxes[i * s + c] = input.readFloat();
+            }
+        }
+
+        int m = readVarint(input);
+        p.ensureDraws(m);
+        p.drawCount = m;
+        for (int i = 0; i < m; i++) p.op[i] = dictionary[readVarint(input)];
+        int end = 0;
+        for (int i = 0; i < m; i++) {
+            end += input.readUnsignedByte();
+            p.drawEnd[i] = end;
+        }
+        p.valueCount = readVarint(input);
+        p.ensureValues(p.valueCount);
+        for (int i = 0; i < p.valueCount; i++) p.values[i] = input.readFloat();
+
+        int k = readVarint(input);
+        p.ensureImages(k);
+        p.imageCount = k;
+        for (int c = 0; c < PageBuffer.IMAGE_STRIDE; c++) {
+            for (int i = 0; i < k; i++) p.images[i * PageBuffer.IMAGE_STRIDE + c] = input.readFloat();
+        }
+        for (int i = 0; i < k; i++) p.imageFile[i] = plan.imageDir != null ? string(readVarint(input)) : -1;
+
+        for (int i = 0; i < size; i++) p.addKind(kinds[i]);
+        if (plan.bounding) breaks = TsvWriter.breaks(p, breaks);
+        return p;
+    }
+
+    // a nullable string, 0 for none and the id in the dictionary plus 1 otherwise
+    int string(int id) { return id == 0 ? -1 : dictionary[id - 1]; }
+
+    static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("varint longer than 5 bytes");
+    }
+
+    @Override
+    public void close() throws IOException { input.close(); }
+}
@@ -0,0 +1,163 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// writes pages in the length-prefixed columnar format described in README.
+// strings go to a dictionary of the document, and a page only carries the strings that are new to it.
+// a page says where in the dictionary its strings start, so a writer of its own can encode any page.
+// without -bounding the text boxes are not written, only where the TSV output breaks lines and words.
+public class BinaryWriter implements PageWriter {
+
+    static final byte[] MAGIC = { 'P', 'D', 'F', 'X' };
+    static final int VERSION = 2;
+    static final int MAX_STRINGS = 1 << 16; // the dictionary starts over beyond this
+
+    static final byte PAGE = 'P';
+    static final byte END = 'E';
+
+    final DataOutputStream output;
+    final ExtractionPlan plan;
+
+    // reused for every page
+    final ByteArrayOutputStream block = new ByteArrayOutputStream(1 << 16);
+    final DataOutputStream data = new DataOutputStream(block);
+    // maps ids of the page buffer to ids of the dictionary, -1 if not used on this page
+    int[] pageIds = new int[0];
+    int[] textIds = new int[0]; // unicode, and fontName with -fontName, of every text
+    int[] opIds = new int[0];
+    int[] fileIds = new int[0];
+    byte[] breaks = new byte[0];
+
+    final Map<String, Integer> dictionary = new HashMap<>();
+    final List<String> added = new ArrayList<>(); // strings of the current page that are new to the dictionary
+
+    public BinaryWriter(OutputStream output, ExtractionPlan plan) {
+        this.output = new DataOutputStream(output);
+        this.plan = plan;
+    }
+
+    static int flags(ExtractionPlan plan) {
+        int flags = 0;
+        if (plan.text) flags |= 1;
+        if (plan.draw) flags |= 1 << 1;
+        if (plan.image) flags |= 1 << 2;
+        if (plan.fontName) flags |= 1 << 3;
+        if (plan.bounding) flags |= 1 << 4;
+        if (plan.glyph) flags |= 1 << 5;
+        if (plan.imageDir != null) flags |= 1 << 6;
+        return flags;
+    }
+
+    @Override
+    public void begin() throws IOException {
+        output.write(MAGIC);
+        output.writeByte(VERSION);
+        output.writeByte(flags(plan));
+    }
+
+    @Override
+    public void end() throws IOException {
+        output.writeByte(END);
+        output.flush();
+    }
+
+    @Override
+    public void flush() throws IOException { output.flush(); }
+
+    @Override
+    public void writePage(PageBuffer page) throws IOException {
+        block.reset();
+        added.clear();
+        if (dictionary.size() >= MAX_STRINGS) dictionary.clear();
+        int base = dictionary.size();
+        if (pageIds.length < page.strings.size()) pageIds = new int[page.strings.size()];
+        Arrays.fill(pageIds, 0, page.strings.size(), -1);
+
+        // ids are assigned before the new strings are written in front of the columns
+        int texts = page.textCount;
+        int columns = plan.fontName ? 2 : 1;
+        if (textIds.length < texts * columns) textIds = new int[texts * columns];
+        for (int i = 0; i < texts; i++) textIds[i] = intern(page, page.unicode[i]);
+        if (plan.fontName) for (int i = 0; i < texts; i++) textIds[texts + i] = intern(page, page.font[i]);
+        if (opIds.length < page.drawCount) opIds = new int[page.drawCount];
+        for (int i = 0; i < page.drawCount; i++) opIds[i] = intern(page, page.op[i]);
+        if (plan.imageDir != null) {
+            if (fileIds.length < page.imageCount) fileIds = new int[page.imageCount];
+            for (int i = 0; i < page.imageCount; i++) fileIds[i] = intern(page, page.imageFile[i]);
+        }
+
+        writeVarint(data, page.pageIndex);
+        writeVarint(data, base);
+        writeVarint(data, added.size());
+        for (String s : added) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(data, bytes.length);
+            data.write(bytes);
+        }
+
+        // kinds are the PageBuffer constants
+        writeVarint(data, page.size);
+        data.write(page.kinds, 0, page.size);
+
+        writeVarint(data, texts);
+        for (int i = 0; i < texts; i++) writeVarint(data, textIds[i]);
+        // a missing font name is 0
+        if (plan.fontName) for (int i = 0; i < texts; i++) writeVarint(data, textIds[texts + i] + 1);
+        if (plan.bounding) {
+            for (int c = 0; c < 4; c++) {
+                for (int i = 0; i < texts; i++) data.writeFloat(page.textBox(i, c));
+            }
+        }
+        else {
+            breaks = TsvWriter.breaks(page, breaks);
+            data.write(breaks, 0, texts);
+        }
+        if (plan.glyph) {
+            for (int c = 4; c < 8; c++) {
+                for (int i = 0; i < texts; i++) data.writeFloat(page.textBox(i, c));
+            }
+        }
+
+        writeVarint(data, page.drawCount);
+        for (int i = 0; i < page.drawCount; i++) writeVarint(data, opIds[i]);
+        for (int i = 0; i < page.drawCount; i++) data.writeByte(page.drawEnd[i] - page.drawStart(i));
+        writeVarint(data, page.valueCount);
+        for (int i = 0; i < page.valueCount; i++) data.writeFloat(page.values[i]);
+
+        writeVarint(data, page.imageCount);
+        for (int c = 0; c < PageBuffer.IMAGE_STRIDE; c++) {
+            for (int i = 0; i < page.imageCount; i++) data.writeFloat(page.image(i, c));
+        }
+        if (plan.imageDir != null) for (int i = 0; i < page.imageCount; i++) writeVarint(data, fileIds[i] + 1);
+
+        data.flush();
+        output.writeByte(PAGE);
+        output.writeInt(block.size());
+        block.writeTo(output);
+    }
+
+    // the id in the dictionary of a string of the page buffer, -1 for a missing string
+    int intern(PageBuffer page, int id) {
+        if (id < 0) return -1;
+        if (pageIds[id] < 0) {
+            String s = page.string(id);
+            Integer known = dictionary.get(s);
+            if (known == null) {
+                known = dictionary.size();
+                dictionary.put(s, known);
+                added.add(s);
+            }
+            pageIds[id] = known;
+        }
+        return pageIds[id];
+    }
+
+    // unsigned LEB128: 7 bits per byte, low bits first, the high bit set on all but the last byte
+    static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
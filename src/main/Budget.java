@@ -0,0 +1,57 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// counts the work on one document against its Limits.
+// the engine calls check() while it interprets a page, pages of several threads share one budget.
+public class Budget {
+
+    // rough size of an item in PageBuffer
+    static final int GLYPH_BYTES = 41;
+    static final int ITEM_BYTES = 9;
+
+    final Limits limits;
+    final long start = System.nanoTime();
+    final AtomicLong operators = new AtomicLong(); // of finished pages
+    final AtomicLong glyphs = new AtomicLong();
+    int truncatedPages = 0;
+    int firstPage = Integer.MAX_VALUE; // pages of several threads end in any order
+    String reason; // of firstPage
+
+    public Budget(Limits limits) {
+        this.limits = limits;
+    }
+
+    // counts of the running page; time is only read when checkTime is set, because nanoTime is not free
+    void check(long pageStart, long pageOperators, long pageGlyphs, long pageItems, long pageValues, boolean checkTime) {
+        if (operators.get() + pageOperators > limits.operators) throw new BudgetExceededException(true, "operators > " + limits.operators);
+        if (glyphs.get() + pageGlyphs > limits.glyphs) throw new BudgetExceededException(true, "glyphs > " + limits.glyphs);
+        if (pageOperators > limits.pageOperators) throw new BudgetExceededException(false, "pageOperators > " + limits.pageOperators);
+        if (pageGlyphs > limits.pageGlyphs) throw new BudgetExceededException(false, "pageGlyphs > " + limits.pageGlyphs);
+        if (pageGlyphs * GLYPH_BYTES + pageItems * ITEM_BYTES + pageValues * 4 > limits.pageHeap) {
+            throw new BudgetExceededException(false, "pageHeap > " + limits.pageHeap / 1024 + "KB");
+        }
+        if (checkTime) {
+            long now = System.nanoTime();
+            if (now - start > limits.time) throw new BudgetExceededException(true, "time > " + limits.time / 1e9 + "s");
+            if (now - pageStart > limits.pageTime) throw new BudgetExceededException(false, "pageTime > " + limits.pageTime / 1e9 + "s");
+        }
+    }
+
+    void endPage(long pageOperators, long pageGlyphs) {
+        operators.addAndGet(pageOperators);
+        glyphs.addAndGet(pageGlyphs);
+    }
+
+    synchronized void truncated(int pageIndex, String reason) {
+        truncatedPages++;
+        if (pageIndex < firstPage) {
+            firstPage = pageIndex;
+            this.reason = "page " + pageIndex + ": " + reason;
+        }
+    }
+
+    // null if no page was truncated
+    synchronized String truncation() {
+        if (truncatedPages == 0) return null;
+        return truncatedPages == 1 ? reason : truncatedPages + " pages, first " + reason;
+    }
+}
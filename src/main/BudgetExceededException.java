@@ -0,0 +1,13 @@
+// thrown from the stream engine callbacks to stop a page or a document at a limit.
+// it is unchecked, because PDFStreamEngine turns IOExceptions of some operators into warnings.
+public class BudgetExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    final boolean document; // a limit of the whole document, no further pages are extracted
+
+    BudgetExceededException(boolean document, String reason) {
+        super(reason, null, false, false);
+        this.document = document;
+    }
+}
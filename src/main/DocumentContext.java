@@ -0,0 +1,42 @@
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// state shared by the pages of one document handle.
+// pages of a handle are processed one after another, so none of it is thread-safe.
+public class DocumentContext {
+
+    final ExtractionPlan plan;
+    final GlyphBoundsCache glyphBounds = new GlyphBoundsCache(PDFExtractor.GLYPH_CACHE_SIZE);
+    final PageBuffer buffer = new PageBuffer();
+    // fonts of this handle by their dictionary, which is compared by identity
+    final Map<COSDictionary, FontMetrics> fontMetrics = new HashMap<>();
+    final Budget budget; // shared by the handles of a document
+    final ImageExporter imageExporter; // null without -imageDir
+    FontCache.Lease fonts; // fonts borrowed from the -fontCache
+
+    public DocumentContext(ExtractionPlan plan) {
+        this(plan, new Budget(plan.limits));
+    }
+
+    public DocumentContext(ExtractionPlan plan, Budget budget) {
+        this.plan = plan;
+        this.budget = budget;
+        this.imageExporter = plan.imageDir == null ? null : new ImageExporter(plan.imageDir);
+    }
+
+    // binds the context to the handle doc, before its first page
+    void open(PDDocument doc) {
+        if (PDFExtractor.fontCache == null) return;
+        fonts = new FontCache.Lease(PDFExtractor.fontCache, doc.getResourceCache(), glyphBounds);
+        doc.setResourceCache(fonts);
+    }
+
+    // after the last page of the handle
+    void close() {
+        if (fonts != null) fonts.release();
+        fonts = null;
+    }
+}
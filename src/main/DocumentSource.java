@@ -0,0 +1,33 @@
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// a document to extract: a file, or an entry of an archive that is held in memory.
+// path names the document in messages and -stats, for an entry it is the archive path followed by the entry name.
+public class DocumentSource {
+
+    final Path path;
+    final String name; // relative name of the output, e.g. the name of the entry
+    final byte[] data; // null for a file
+
+    public DocumentSource(Path path) {
+        this(path, path.toString(), null);
+    }
+
+    public DocumentSource(Path path, String name, byte[] data) {
+        this.path = path;
+        this.name = name;
+        this.data = data;
+    }
+
+    // every call returns a new handle
+    PDDocument load(MemoryUsageSetting memoryUsage) throws IOException {
+        if (data == null) return PDDocument.load(path.toFile(), memoryUsage);
+        return PDDocument.load(data, "", null, null, memoryUsage);
+    }
+
+    @Override
+    public String toString() { return path.toString(); }
+}
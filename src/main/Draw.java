@@ -1,9 +0,0 @@
-public class Draw {
-    String op;
-    float[] values;
-
-    public Draw(String op, float[] values) {
-        this.op = op;
-        this.values = values;
-    }
-}
@@ -0,0 +1,28 @@
+import java.io.IOException;
+
+// receives the items of a document while the content streams are interpreted.
+// coordinates are those of the output, see README. only the items of the ExtractionPlan are reported.
+public interface ExtractionListener {
+
+    void startPage(int pageIndex) throws IOException;
+
+    // bounding coordinates, and glyph coordinates with -glyph (0 otherwise). fontName may be null.
+    void glyph(String unicode, String fontName, float bx, float by, float bw, float bh,
+               float gx, float gy, float gw, float gh) throws IOException;
+
+    // op is e.g. MOVE_TO or STROKE_PATH, values[0 .. length - 1] are x, y pairs.
+    // values may be reused after the call returns.
+    void path(String op, float[] values, int length) throws IOException;
+
+    void image(float x, float y, float w, float h) throws IOException;
+
+    // with -imageDir: file is the name of the exported image in the directory, null if it could not be exported
+    default void image(float x, float y, float w, float h, String file) throws IOException {
+        image(x, y, w, h);
+    }
+
+    void endPage(int pageIndex) throws IOException;
+
+    // the page that just ended was cut short at a limit of -limits
+    default void truncated(int pageIndex, String reason) throws IOException { }
+}
@@ -0,0 +1,443 @@
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// extracts the documents of a batch in stages that overlap:
+//   read       checks the manifest and reads the file into memory (one thread, files stay on disk with -lowMemory)
+//   parse      loads the document
+//   extract    interprets the pages into page buffers of their own
+//   serialize  writes the pages of the documents in submission order (one thread, owns the writers)
+// stages are connected by bounded queues, so a slow stage blocks the stages before it and memory stays bounded:
+// at most depth documents wait between two stages and PAGE_QUEUE pages per document wait for the serializer.
+// parse threads finish documents out of order, but hand them to extract in submission order. an extract thread that
+// waits for the serializer then waits for a document that the serializer reaches without waiting for that thread.
+// with -stats, the utilization of every stage and the depth of its queue are printed at the end.
+public class ExtractionPipeline implements Batch {
+
+    static final int PAGE_QUEUE = 16;
+    static final int MAX_STRINGS = 4096; // a recycled page buffer keeps the strings of all its pages
+
+    final ExtractionPlan plan;
+    final BatchOutput output;
+    final long started = System.nanoTime();
+    final Stage read, parse, extract;
+    final Thread serializer;
+    final BlockingQueue<Doc> order = new LinkedBlockingQueue<>(); // documents in submission order
+    final Doc endOfInput = new Doc(null, -1);
+    final Utilization serializeUse = new Utilization(1);
+    final BlockingQueue<PageBuffer> freeBuffers; // page buffers that the serializer is done with
+    final int depth;
+    long submitted = 0; // sequence number of the next document
+    // documents that are parsed, or failed or skipped before, by sequence number, until their turn to extract
+    final Map<Long, Doc> parsed = new HashMap<>();
+    long nextExtract = 0;
+    final Batch.Listener listener; // may be null
+    int skipped = 0;
+
+    public ExtractionPipeline(ExtractionPlan plan, int threads, int depth, BatchOutput output) {
+        this(plan, threads, depth, output, null);
+    }
+
+    public ExtractionPipeline(ExtractionPlan plan, int threads, int depth, BatchOutput output, Batch.Listener listener) {
+        this.plan = plan;
+        this.output = output;
+        this.listener = listener;
+        this.depth = depth;
+        this.freeBuffers = new ArrayBlockingQueue<>(threads * PAGE_QUEUE);
+        this.extract = new Stage("extract", threads, depth, null, this::extract);
+        this.parse = new Stage("parse", threads, depth, extract, this::parse);
+        this.read = new Stage("read", 1, depth, parse, this::read);
+        this.serializer = new Thread(this::serialize, "pipeline-serialize");
+        this.serializer.start();
+    }
+
+    @Override
+    public void submit(DocumentSource source) throws InterruptedException {
+        Doc doc = new Doc(source, submitted++);
+        order.put(doc);
+        read.put(doc, null);
+    }
+
+    // every document goes on to parse, also a skipped or failed one, so that it takes its turn in handOff
+    void read(Doc doc) throws InterruptedException {
+        try {
+            doc.target = output.open(doc.source);
+            if (doc.target != null) {
+                if (PDFExtractor.stats != null) doc.fileStats = new FileStats(doc.source.path);
+                if (doc.source.data == null && !PDFExtractor.lowMemory) {
+                    doc.source = new DocumentSource(doc.source.path, doc.source.name, Files.readAllBytes(doc.source.path));
+                }
+            }
+        }
+        catch (Exception | LinkageError e) {
+            doc.fail(e);
+        }
+        parse.put(doc, read);
+    }
+
+    void parse(Doc doc) throws InterruptedException {
+        if (doc.target != null && doc.failure == null) {
+            try {
+                doc.pdf = PDFExtractor.load(doc.source, doc.fileStats);
+            }
+            catch (Exception | LinkageError e) {
+                doc.fail(e);
+            }
+        }
+        handOff(doc);
+    }
+
+    // passes the documents to extract in submission order, and ends those without pages.
+    // a thread whose document is depth or more ahead waits, so that parsed documents do not pile up
+    void handOff(Doc doc) throws InterruptedException {
+        long start = System.nanoTime();
+        synchronized (parsed) {
+            while (doc.sequence >= nextExtract + depth) parsed.wait();
+            parsed.put(doc.sequence, doc);
+            Doc next;
+            // the queue of extract only holds documents before any waiting here, so the serializer empties it
+            while ((next = parsed.remove(nextExtract)) != null) {
+                if (next.pdf == null) {
+                    if (listener != null) listener.extracted(next.source);
+                    next.end();
+                }
+                else extract.put(next, null);
+                nextExtract++;
+            }
+            parsed.notifyAll();
+        }
+        parse.blocked.addAndGet(System.nanoTime() - start);
+    }
+
+    void extract(Doc doc) throws IOException, InterruptedException {
+        DocumentContext context = new DocumentContext(plan);
+        PageQueueListener listener = new PageQueueListener(doc);
+        try (PDDocument pdf = doc.pdf) {
+            context.open(pdf);
+            for (int i : plan.pages.select(pdf.getNumberOfPages())) {
+                if (doc.failure != null) break; // the output could not be written
+                PDFExtractor.extractPage(pdf, i, listener, context, null);
+                PDFExtractor.endPage(pdf);
+            }
+        }
+        catch (BudgetExceededException e) {
+            // a limit of the document, the pages up to it are queued
+        }
+        catch (Exception | LinkageError e) {
+            // before the end of the pages, so that the serializer sees it
+            doc.fail(e);
+        }
+        finally {
+            doc.pdf = null;
+            context.close();
+            PDFExtractor.reportTruncation(doc.source.path, context.budget, doc.fileStats);
+            doc.truncated = context.budget.truncation() != null;
+            if (PDFExtractor.cacheStats) System.err.println(doc.source + "\t" + context.glyphBounds);
+            if (this.listener != null) this.listener.extracted(doc.source);
+            doc.end();
+        }
+    }
+
+    void serialize() {
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                Doc doc = order.take();
+                if (doc == endOfInput) break;
+                Page page = doc.pages.take();
+                serializeUse.blocked.addAndGet(System.nanoTime() - start);
+                if (doc.target == null && doc.failure == null) skipped++;
+                else if (doc.failure == null) {
+                    serialize(doc, page);
+                    if (doc.failure == null) {
+                        try {
+                            doc.target.commit();
+                            System.out.println(doc.source);
+                        }
+                        catch (IOException e) {
+                            doc.fail(e);
+                        }
+                    }
+                }
+                if (doc.failure != null) {
+                    // one broken file must not stop the batch
+                    if (doc.target != null) doc.target.abort();
+                    System.err.println(doc.source + ": " + doc.failure);
+                }
+                if (doc.fileStats != null) {
+                    doc.fileStats.failure = doc.failure;
+                    doc.fileStats.totalNanos = System.nanoTime() - doc.started;
+                    PDFExtractor.stats.add(doc.fileStats);
+                }
+                if (listener != null) listener.reported(doc.source, doc.failure != null);
+                serializeUse.busy.addAndGet(System.nanoTime() - start);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // writes the pages of doc as they come, starting with page, until the end of its pages.
+    // after a failure the remaining pages are only taken, so that the extractor is not blocked.
+    void serialize(Doc doc, Page page) throws InterruptedException {
+        OutputStream out = doc.target.out;
+        if (doc.fileStats != null) out = new ExtractionStats.CountingOutputStream(out);
+        PageWriter w = PageWriter.create(out, plan);
+        try {
+            w.begin();
+        }
+        catch (IOException e) {
+            doc.fail(e);
+        }
+        while (page != Page.END) {
+            if (doc.failure == null) {
+                long start = System.nanoTime();
+                try {
+                    w.writePage(page.buffer);
+                }
+                catch (IOException | RuntimeException e) {
+                    doc.fail(e);
+                }
+                if (doc.fileStats != null) {
+                    doc.fileStats.addPage(page.interpretNanos, System.nanoTime() - start, page.buffer.textCount,
+                            page.buffer.drawCount, page.buffer.imageCount);
+                }
+            }
+            freeBuffers.offer(page.buffer);
+            long idle = System.nanoTime();
+            page = doc.pages.take();
+            serializeUse.blocked.addAndGet(System.nanoTime() - idle);
+        }
+        if (doc.failure != null) return;
+        try {
+            if (!doc.truncated) w.end();
+            w.flush();
+            doc.target.finish();
+        }
+        catch (IOException e) {
+            doc.fail(e);
+        }
+        if (doc.fileStats != null) doc.fileStats.bytes = ((ExtractionStats.CountingOutputStream)out).count;
+    }
+
+    String statsJson() {
+        long wall = System.nanoTime() - started;
+        StringBuilder json = new StringBuilder("{\"pipeline\":{");
+        for (Stage stage : new Stage[] { read, parse, extract }) {
+            json.append('"').append(stage.name).append("\":");
+            stage.use.toJson(json, wall);
+            json.setLength(json.length() - 1);
+            json.append(String.format(Locale.ROOT, ",\"queueAvg\":%.2f,\"queueMax\":%d},",
+                    stage.samples.get() == 0 ? 0.0 : (double)stage.depthSum.get() / stage.samples.get(), stage.depthMax.get()));
+        }
+        json.append("\"serialize\":");
+        serializeUse.toJson(json, wall);
+        return json.append("}}").toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            order.put(endOfInput);
+            read.put(Stage.POISON, null);
+            serializer.join();
+            if (skipped > 0) System.err.println(skipped + " unchanged files skipped");
+            if (PDFExtractor.stats != null) System.err.println(statsJson());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    interface Work {
+        void run(Doc doc) throws Exception;
+    }
+
+    // busy time of the threads of a stage, without the time they wait for a queue
+    static class Utilization {
+        final int threads;
+        final AtomicLong busy = new AtomicLong(); // time in work, including blocked
+        final AtomicLong blocked = new AtomicLong(); // time waiting for the next queue
+
+        Utilization(int threads) {
+            this.threads = threads;
+        }
+
+        void toJson(StringBuilder json, long wall) {
+            double utilization = (double)Math.max(0, busy.get() - blocked.get()) / ((double)wall * threads);
+            json.append(String.format(Locale.ROOT, "{\"threads\":%d,\"utilization\":%.3f}", threads, utilization));
+        }
+    }
+
+    // threads that take documents from a bounded queue and run work on them.
+    // the threads stop at POISON, and the last of them passes it on to the next stage.
+    static class Stage {
+        static final Doc POISON = new Doc(null, -1);
+
+        final String name;
+        final BlockingQueue<Doc> in;
+        final Stage next;
+        final Work work;
+        final Utilization use;
+        final AtomicLong blocked; // of use, also added to by the previous stage's puts into next
+        final AtomicInteger running;
+        final AtomicLong depthSum = new AtomicLong(), samples = new AtomicLong(), depthMax = new AtomicLong();
+
+        Stage(String name, int threads, int depth, Stage next, Work work) {
+            this.name = name;
+            this.in = new ArrayBlockingQueue<>(depth);
+            this.next = next;
+            this.work = work;
+            this.use = new Utilization(threads);
+            this.blocked = use.blocked;
+            this.running = new AtomicInteger(threads);
+            for (int i = 0; i < threads; i++) {
+                Thread thread = new Thread(this::run, "pipeline-" + name + "-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        // from is the stage that waits if the queue is full, null for the submitting thread
+        void put(Doc doc, Stage from) throws InterruptedException {
+            long start = System.nanoTime();
+            in.put(doc);
+            if (from != null) from.blocked.addAndGet(System.nanoTime() - start);
+            int depth = in.size();
+            depthSum.addAndGet(depth);
+            samples.incrementAndGet();
+            depthMax.accumulateAndGet(depth, Math::max);
+        }
+
+        void run() {
+            try {
+                while (true) {
+                    Doc doc = in.take();
+                    if (doc == POISON) {
+                        if (running.decrementAndGet() == 0 && next != null) {
+                            for (int i = 0; i < next.use.threads; i++) next.put(POISON, null);
+                        }
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        work.run(doc);
+                    }
+                    catch (Exception | LinkageError e) {
+                        doc.fail(e);
+                        doc.end();
+                    }
+                    use.busy.addAndGet(System.nanoTime() - start);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static class Doc {
+        DocumentSource source;
+        final long sequence; // in submission order
+        final long started = System.nanoTime();
+        final BlockingQueue<Page> pages = new ArrayBlockingQueue<>(PAGE_QUEUE);
+        BatchOutput.Target target;
+        FileStats fileStats;
+        PDDocument pdf;
+        volatile Throwable failure; // the first one
+        boolean truncated; // by a limit, set before the end of the pages
+        boolean ended; // only used by the stage that has the document
+
+        Doc(DocumentSource source, long sequence) {
+            this.source = source;
+            this.sequence = sequence;
+        }
+
+        void fail(Throwable e) {
+            if (failure == null) failure = e;
+        }
+
+        // the serializer takes pages until the end, also of a failed document
+        void end() throws InterruptedException {
+            if (ended) return;
+            ended = true;
+            pages.put(Page.END);
+        }
+    }
+
+    static class Page {
+        static final Page END = new Page(null, 0);
+
+        final PageBuffer buffer;
+        final long interpretNanos;
+
+        Page(PageBuffer buffer, long interpretNanos) {
+            this.buffer = buffer;
+            this.interpretNanos = interpretNanos;
+        }
+    }
+
+    // hands every page to the serializer in a buffer of its own, recycling the buffers it wrote
+    class PageQueueListener implements ExtractionListener {
+        final Doc doc;
+        PageBuffer buffer;
+        long pageStart;
+
+        PageQueueListener(Doc doc) {
+            this.doc = doc;
+        }
+
+        @Override
+        public void startPage(int pageIndex) {
+            buffer = freeBuffers.poll();
+            if (buffer == null || buffer.strings.size() > MAX_STRINGS) buffer = new PageBuffer();
+            buffer.startPage(pageIndex);
+            pageStart = System.nanoTime();
+        }
+
+        @Override
+        public void glyph(String unicode, String fontName, float bx, float by, float bw, float bh,
+                          float gx, float gy, float gw, float gh) {
+            buffer.glyph(unicode, fontName, bx, by, bw, bh, gx, gy, gw, gh);
+        }
+
+        @Override
+        public void path(String op, float[] values, int length) {
+            buffer.path(op, values, length);
+        }
+
+        @Override
+        public void image(float x, float y, float w, float h) {
+            buffer.image(x, y, w, h);
+        }
+
+        @Override
+        public void image(float x, float y, float w, float h, String file) {
+            buffer.image(x, y, w, h, file);
+        }
+
+        @Override
+        public void endPage(int pageIndex) throws IOException {
+            long start = System.nanoTime();
+            try {
+                doc.pages.put(new Page(buffer, start - pageStart));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            extract.blocked.addAndGet(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+// what is extracted from a document, derived from the command line options.
+// the engine reads it to skip every computation whose result is not written.
+public class ExtractionPlan {
+
+    static final ExtractionPlan ALL = new ExtractionPlan(true, true, true, false, false, false, false);
+
+    final boolean text;
+    final boolean draw;
+    final boolean image;
+    final boolean fontName;
+    final boolean bounding;
+    final boolean glyph;
+    final boolean binary; // -format binary instead of TSV
+    final PageSet pages;
+    final Limits limits; // -limits
+    final String imageDir; // -imageDir, null if images are not exported
+
+    // bounding coordinates are computed for every text, because the TSV output groups lines and words by them.
+    // glyph outlines are only loaded when they are written.
+    final boolean glyphBounds;
+
+    public ExtractionPlan(boolean text, boolean draw, boolean image, boolean fontName, boolean bounding, boolean glyph,
+                          boolean binary) {
+        this(text, draw, image, fontName, bounding, glyph, binary, PageSet.ALL, Limits.NONE);
+    }
+
+    public ExtractionPlan(boolean text, boolean draw, boolean image, boolean fontName, boolean bounding, boolean glyph,
+                          boolean binary, PageSet pages, Limits limits) {
+        this(text, draw, image, fontName, bounding, glyph, binary, pages, limits, null);
+    }
+
+    public ExtractionPlan(boolean text, boolean draw, boolean image, boolean fontName, boolean bounding, boolean glyph,
+                          boolean binary, PageSet pages, Limits limits, String imageDir) {
+        if (!text && !draw && !image) text = draw = image = true;
+        this.text = text;
+        this.draw = draw;
+        this.image = image;
+        this.fontName = fontName;
+        this.bounding = bounding;
+        this.glyph = glyph;
+        this.binary = binary;
+        this.pages = pages;
+        this.limits = limits;
+        this.imageDir = image ? imageDir : null;
+        this.glyphBounds = text && glyph;
+    }
+
+    // unknown arguments are left to the caller
+    public static ExtractionPlan parse(String[] args) {
+        boolean text = false, draw = false, image = false, fontName = false, bounding = false, glyph = false;
+        boolean binary = false;
+        PageSet pages = PageSet.ALL;
+        Limits limits = Limits.NONE;
+        String imageDir = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-text")) text = true;
+            else if (arg.equals("-draw")) draw = true;
+            else if (arg.equals("-image")) image = true;
+            else if (arg.equals("-fontName")) fontName = true;
+            else if (arg.equals("-bounding")) bounding = true;
+            else if (arg.equals("-glyph")) glyph = true;
+            else if (arg.equals("-format") && i + 1 < args.length) binary = parseFormat(args[++i]);
+            else if (arg.equals("-pages") && i + 1 < args.length) pages = PageSet.parse(args[++i]);
+            else if (arg.equals("-limits") && i + 1 < args.length) limits = Limits.parse(args[++i]);
+            else if (arg.equals("-imageDir") && i + 1 < args.length) imageDir = args[++i];
+        }
+        if (imageDir != null && (text || draw)) image = true;
+        return new ExtractionPlan(text, draw, image, fontName, bounding, glyph, binary, pages, limits, imageDir);
+    }
+
+    // true for binary
+    static boolean parseFormat(String format) {
+        if (format.equals("binary")) return true;
+        if (format.equals("tsv")) return false;
+        throw new IllegalArgumentException("invalid format: " + format + " (tsv or binary)");
+    }
+
+    // every option that the output depends on, e.g. to tell whether an output is still up to date
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        if (text) s.append("text ");
+        if (draw) s.append("draw ");
+        if (image) s.append("image ");
+        if (fontName) s.append("fontName ");
+        if (bounding) s.append("bounding ");
+        if (glyph) s.append("glyph ");
+        if (imageDir != null) s.append("imageFiles ");
+        s.append(binary ? "binary" : "tsv");
+        return s.append(" pages=").append(pages).append(" limits=").append(limits).toString();
+    }
+
+    public ExtractionPlan withPages(PageSet pages) {
+        return new ExtractionPlan(text, draw, image, fontName, bounding, glyph, binary, pages, limits, imageDir);
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+
+// keeps one JVM with warm caches and extracts documents on request.
+// requests are read line by line from stdin, or from connections to a port on localhost with -port.
+// fields of requests and responses are separated by tabs:
+//   extract <id> <path> <options...>   extracts a file with the options of PDFExtractor
+//   stats                               throughput and latency since the start of the server
+//   quit                                ends the connection after the running jobs
+// jobs run concurrently, so responses come in the order the jobs finish:
+//   result <id> <length>                followed by length bytes of output
+//   done <id>                           the output was written to the file given with -out <file>
+//   error <id> <cause>
+//   stats <json>
+public class ExtractionServer {
+
+    final ExecutorService executor;
+    final long started = System.nanoTime();
+    // from reading an extract request to writing its response, guarded by itself
+    final ExtractionStats.Histogram latency = new ExtractionStats.Histogram();
+
+    public ExtractionServer(int threads) {
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        PDFExtractor.configure(args, 0);
+        PDFExtractor.stats = new ExtractionStats();
+        int port = -1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-port")) port = Integer.parseInt(args[++i]);
+        }
+
+        ExtractionServer server = new ExtractionServer(PDFExtractor.threads);
+        if (port < 0) {
+            server.serve(System.in, System.out);
+            server.executor.shutdown();
+            return;
+        }
+        try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket connection = socket.accept();
+                new Thread(() -> {
+                    try (Socket c = connection) {
+                        server.serve(c.getInputStream(), c.getOutputStream());
+                    }
+                    catch (IOException e) {
+                        System.err.println(e);
+                    }
+                }).start();
+            }
+        }
+    }
+
+    // handles one connection until quit or end of input, then waits for its jobs
+    void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Connection connection = new Connection(out);
+        Phaser running = new Phaser(1);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long received = System.nanoTime();
+                String[] fields = line.split("\t");
+                if (fields[0].equals("extract") && fields.length >= 3) {
+                    running.register();
+                    executor.execute(() -> {
+                        try {
+                            extract(connection, fields[1], Paths.get(fields[2]), Arrays.copyOfRange(fields, 3, fields.length), received);
+                        }
+                        finally {
+                            running.arriveAndDeregister();
+                        }
+                    });
+                }
+                else if (fields[0].equals("stats")) connection.send("stats\t" + statsJson(), null);
+                else if (fields[0].equals("quit")) break;
+                else if (!fields[0].isEmpty()) connection.send("error\t\tunknown request: " + fields[0], null);
+            }
+        }
+        finally {
+            running.arriveAndAwaitAdvance();
+        }
+    }
+
+    void extract(Connection connection, String id, Path path, String[] options, long received) {
+        try {
+            ExtractionPlan plan = ExtractionPlan.parse(options);
+            String outFile = null;
+            for (int i = 0; i < options.length - 1; i++) {
+                if (options[i].equals("-out")) outFile = options[i + 1];
+            }
+            if (outFile != null) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile))) {
+                    PDFExtractor.processFile(path, out, plan);
+                }
+                connection.send("done\t" + id, null);
+            }
+            else {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                PDFExtractor.processFile(path, out, plan);
+                connection.send("result\t" + id + "\t" + out.size(), out);
+            }
+        }
+        catch (Exception e) {
+            // a failed job is answered, the server keeps running
+            try {
+                connection.send("error\t" + id + "\t" + e.toString().replaceAll("\\s", " "), null);
+            }
+            catch (IOException closed) { }
+        }
+        finally {
+            long nanos = System.nanoTime() - received;
+            synchronized (latency) {
+                latency.add(nanos);
+            }
+        }
+    }
+
+    // latencyMs is what clients see, including the wait for a thread and the response.
+    // fileMs of the totals only covers processFile
+    String statsJson() {
+        long uptime = System.nanoTime() - started;
+        ExtractionStats stats = PDFExtractor.stats;
+        int files;
+        synchronized (stats) {
+            files = stats.files;
+        }
+        ExtractionStats.Histogram latency;
+        synchronized (this.latency) {
+            latency = this.latency.copy();
+        }
+        StringBuilder json = new StringBuilder("{\"uptimeMs\":").append(ExtractionStats.millis(uptime));
+        json.append(",\"filesPerSecond\":").append(String.format(Locale.ROOT, "%.3f", files / (uptime / 1e9)));
+        json.append(",\"latencyMs\":");
+        latency.percentiles(json);
+        return json.append(",\"totals\":").append(stats.toJson()).append('}').toString();
+    }
+
+    // responses of concurrent jobs must not interleave
+    static class Connection {
+        final OutputStream out;
+
+        Connection(OutputStream out) {
+            this.out = new BufferedOutputStream(out);
+        }
+
+        synchronized void send(String header, ByteArrayOutputStream body) throws IOException {
+            out.write(header.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+            if (body != null) body.writeTo(out);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// sums up the FileStats of a run and summarizes them as JSON for -stats.
+// a FileStats is folded in when its file is finished; file and page times go into histograms of fixed size,
+// so a long run or the server does not grow with the files and pages it has seen.
+public class ExtractionStats {
+
+    static final int SLOWEST = 10;
+    static final int MAX_FAILURES = 100;
+
+    int files = 0;
+    int failed = 0;
+    int truncated = 0;
+    long parse = 0, interpret = 0, serialize = 0, glyphs = 0, draws = 0, images = 0, bytes = 0;
+    final Histogram fileNanos = new Histogram();
+    final Histogram pageNanos = new Histogram();
+    long pageCount = 0;
+    final List<FileStats> slowest = new ArrayList<>(); // the SLOWEST slowest files, slowest first
+    final List<FileStats> failures = new ArrayList<>(); // the first MAX_FAILURES failed files
+    final List<FileStats> truncations = new ArrayList<>(); // the first MAX_FAILURES truncated files
+
+    synchronized void add(FileStats file) {
+        files++;
+        fileNanos.add(file.totalNanos);
+        for (int i = 0; i < file.pages; i++) pageNanos.add(file.pageNanos[i]);
+        pageCount += file.pages;
+        file.pageNanos = null;
+
+        parse += file.parseNanos;
+        interpret += file.interpretNanos;
+        serialize += file.serializeNanos;
+        glyphs += file.glyphs;
+        draws += file.draws;
+        images += file.images;
+        bytes += file.bytes;
+        if (file.failure != null) {
+            failed++;
+            if (failures.size() < MAX_FAILURES) failures.add(file);
+        }
+        if (file.truncated != null) {
+            truncated++;
+            if (truncations.size() < MAX_FAILURES) truncations.add(file);
+        }
+
+        int i = 0;
+        while (i < slowest.size() && slowest.get(i).totalNanos >= file.totalNanos) i++;
+        if (i < SLOWEST) {
+            slowest.add(i, file);
+            if (slowest.size() > SLOWEST) slowest.remove(SLOWEST);
+        }
+    }
+
+    // the histograms are copied under the lock and summarized outside of it, so add() is not held up
+    String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        StringBuilder tail = new StringBuilder();
+        Histogram fileNanos, pageNanos;
+        synchronized (this) {
+            counts(json);
+            fileNanos = this.fileNanos.copy();
+            pageNanos = this.pageNanos.copy();
+            lists(tail);
+        }
+        json.append(",\"fileMs\":");
+        fileNanos.percentiles(json);
+        json.append(",\"pageMs\":");
+        pageNanos.percentiles(json);
+        json.append(tail);
+        if (PDFExtractor.fontCache != null) json.append(",\"fontCache\":").append(PDFExtractor.fontCache.toJson());
+        return json.append('}').toString();
+    }
+
+    void counts(StringBuilder json) {
+        json.append("\"files\":").append(files);
+        json.append(",\"failed\":").append(failed);
+        json.append(",\"truncated\":").append(truncated);
+        json.append(",\"pages\":").append(pageCount);
+        json.append(",\"glyphs\":").append(glyphs);
+        json.append(",\"draws\":").append(draws);
+        json.append(",\"images\":").append(images);
+        json.append(",\"bytes\":").append(bytes);
+        json.append(",\"parseMs\":").append(millis(parse));
+        json.append(",\"interpretMs\":").append(millis(interpret));
+        json.append(",\"serializeMs\":").append(millis(serialize));
+    }
+
+    void lists(StringBuilder json) {
+        json.append(",\"slowest\":[");
+        for (int i = 0; i < slowest.size(); i++) {
+            FileStats f = slowest.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"file\":");
+            string(json, f.path.toString());
+            json.append(",\"ms\":").append(millis(f.totalNanos));
+            json.append(",\"pages\":").append(f.pages);
+            json.append('}');
+        }
+        json.append("],\"failures\":[");
+        for (int i = 0; i < failures.size(); i++) {
+            FileStats f = failures.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"file\":");
+            string(json, f.path.toString());
+            json.append(",\"cause\":");
+            string(json, f.failure.toString());
+            json.append('}');
+        }
+        json.append("],\"truncations\":[");
+        for (int i = 0; i < truncations.size(); i++) {
+            FileStats f = truncations.get(i);
+            if (i > 0) json.append(',');
+            json.append("{\"file\":");
+            string(json, f.path.toString());
+            json.append(",\"reason\":");
+            string(json, f.truncated);
+            json.append('}');
+        }
+        json.append(']');
+    }
+
+    static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    static void string(StringBuilder json, String s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') json.append('\\').append(c);
+            else if (c < 0x20) json.append(String.format("\\u%04x", (int)c));
+            else json.append(c);
+        }
+        json.append('"');
+    }
+
+    // counts of durations in buckets of about 3% width: SUB_BUCKETS buckets per power of two nanoseconds.
+    // percentiles are the middle of their bucket, the maximum is exact
+    static class Histogram {
+        static final int SUB_BITS = 5;
+        static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+        long[] counts = new long[64 * SUB_BUCKETS];
+        long count = 0;
+        long max = 0;
+
+        void add(long nanos) {
+            if (nanos < 0) nanos = 0;
+            counts[bucket(nanos)]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        // values below SUB_BUCKETS have a bucket each
+        static int bucket(long nanos) {
+            if (nanos < SUB_BUCKETS) return (int)nanos;
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos); // >= SUB_BITS
+            int sub = (int)(nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long middle(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            long width = 1L << (exponent - SUB_BITS);
+            long lower = (1L << exponent) + (bucket % SUB_BUCKETS) * width;
+            return lower + width / 2;
+        }
+
+        Histogram copy() {
+            Histogram h = new Histogram();
+            h.counts = counts.clone();
+            h.count = count;
+            h.max = max;
+            return h;
+        }
+
+        // nearest rank
+        long percentile(int p) {
+            if (count == 0) return 0;
+            long rank = Math.max((long)Math.ceil(p / 100.0 * count), 1);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(middle(i), max);
+            }
+            return max;
+        }
+
+        void percentiles(StringBuilder json) {
+            json.append("{\"p50\":").append(millis(percentile(50)));
+            json.append(",\"p90\":").append(millis(percentile(90)));
+            json.append(",\"p99\":").append(millis(percentile(99)));
+            json.append(",\"max\":").append(millis(max));
+            json.append('}');
+        }
+    }
+
+    // counts the bytes written for a file
+    static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// counters of one file for -stats.
+// with -pageThreads several workers add their pages, so updates are synchronized; it is once per page.
+public class FileStats {
+
+    final Path path;
+    long parseNanos; // loading the document, summed over all handles
+    long interpretNanos; // running the content streams
+    long serializeNanos; // writing pages at their end
+    long totalNanos;
+    int pages;
+    long glyphs;
+    long draws;
+    long images;
+    long bytes;
+    Throwable failure;
+    String truncated; // reason if pages were cut short at a limit
+    long[] pageNanos = new long[16];
+
+    public FileStats(Path path) {
+        this.path = path;
+    }
+
+    synchronized void addParse(long nanos) {
+        parseNanos += nanos;
+    }
+
+    synchronized void addPage(long interpret, long serialize, int glyphs, int draws, int images) {
+        interpretNanos += interpret;
+        serializeNanos += serialize;
+        if (pages == pageNanos.length) pageNanos = Arrays.copyOf(pageNanos, pages * 2);
+        pageNanos[pages++] = interpret + serialize;
+        this.glyphs += glyphs;
+        this.draws += draws;
+        this.images += images;
+    }
+}
@@ -0,0 +1,310 @@
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// parsed embedded fonts and the bounds of their glyph outlines, shared by the documents of a batch (-fontCache).
+// a font is keyed by a hash of its dictionary, including the embedded font program, its widths, encoding and
+// ToUnicode map, so documents that embed the same subset get the same key.
+// PDFont is not thread-safe, so a font is lent to one document handle at a time and given back when the handle is done;
+// only idle fonts are held by the cache, and the least recently used ones are evicted beyond maxBytes.
+// Type3 fonts are not cached, their glyphs are content streams with resources of the document.
+public class FontCache {
+
+    static final int BOUNDS_BYTES = 96; // estimated heap of a cached glyph bounds entry
+
+    final long maxBytes;
+    final LinkedHashMap<String, Entry> idle = new LinkedHashMap<>(64, 0.75f, true);
+    long bytes = 0; // estimated heap of the idle fonts
+    long hits = 0;
+    long misses = 0;
+    long evictions = 0;
+
+    public FontCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // takes the font out of the cache, or returns null
+    synchronized Entry borrow(String key) {
+        Entry entry = idle.remove(key);
+        if (entry == null) misses++;
+        else {
+            hits++;
+            bytes -= entry.bytes;
+        }
+        return entry;
+    }
+
+    synchronized void giveBack(Entry entry) {
+        // another handle may have parsed the same font meanwhile
+        if (idle.containsKey(entry.key)) return;
+        entry.bytes = entry.programBytes + (long)entry.bounds.size() * BOUNDS_BYTES;
+        idle.put(entry.key, entry);
+        bytes += entry.bytes;
+        Iterator<Entry> eldest = idle.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    synchronized String toJson() {
+        return "{\"hits\":" + hits + ",\"misses\":" + misses + ",\"evictions\":" + evictions
+                + ",\"fonts\":" + idle.size() + ",\"bytes\":" + bytes + "}";
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "hits=" + hits + "\tmisses=" + misses + "\tevictions=" + evictions + "\tfonts=" + idle.size() + "\tbytes=" + bytes;
+    }
+
+    // the key of a font dictionary, or null if the font is not cached
+    static String key(COSDictionary font) throws IOException {
+        if (COSName.TYPE3.equals(font.getCOSName(COSName.SUBTYPE))) return null;
+        if (programBytes(font) == 0) return null; // fonts without a program of their own are cheap
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            hash(font, digest, new IdentityHashMap<>());
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // size of the embedded font program, also of the descendant font of a Type0 font
+    static long programBytes(COSDictionary font) {
+        COSBase descendants = font.getDictionaryObject(COSName.DESCENDANT_FONTS);
+        if (descendants instanceof COSArray && ((COSArray)descendants).size() > 0
+                && ((COSArray)descendants).getObject(0) instanceof COSDictionary) {
+            font = (COSDictionary)((COSArray)descendants).getObject(0);
+        }
+        COSDictionary descriptor = font.getCOSDictionary(COSName.FONT_DESC);
+        if (descriptor == null) return 0;
+        for (COSName name : new COSName[] { COSName.FONT_FILE, COSName.FONT_FILE2, COSName.FONT_FILE3 }) {
+            COSBase file = descriptor.getDictionaryObject(name);
+            if (file instanceof COSStream) {
+                // decoded lengths of Type1 and TrueType programs, the encoded length otherwise
+                COSStream stream = (COSStream)file;
+                long decoded = stream.getLong(COSName.LENGTH1, 0) + stream.getLong(COSName.LENGTH2, 0);
+                return Math.max(decoded, stream.getLength());
+            }
+        }
+        return 0;
+    }
+
+    // content of a COS object; indirect objects are followed, with a back reference for those already visited
+    static void hash(COSBase base, MessageDigest digest, Map<COSBase, Integer> visited) throws IOException {
+        if (base instanceof COSObject) base = ((COSObject)base).getObject();
+        if (base == null || base instanceof COSNull) {
+            digest.update((byte)'0');
+            return;
+        }
+        Integer seen = visited.get(base);
+        if (seen != null) {
+            digest.update((byte)'r');
+            update(digest, seen.toString());
+            return;
+        }
+        if (base instanceof COSDictionary) {
+            visited.put(base, visited.size());
+            COSDictionary dict = (COSDictionary)base;
+            List<COSName> keys = new ArrayList<>(dict.keySet());
+            Collections.sort(keys);
+            digest.update((byte)'d');
+            update(digest, Integer.toString(keys.size()));
+            for (COSName key : keys) {
+                update(digest, key.getName());
+                hash(dict.getItem(key), digest, visited);
+            }
+            if (base instanceof COSStream) {
+                digest.update((byte)'s');
+                byte[] buffer = new byte[8192];
+                try (InputStream in = ((COSStream)base).createRawInputStream()) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) digest.update(buffer, 0, n);
+                }
+            }
+        }
+        else if (base instanceof COSArray) {
+            visited.put(base, visited.size());
+            COSArray array = (COSArray)base;
+            digest.update((byte)'a');
+            update(digest, Integer.toString(array.size()));
+            for (int i = 0; i < array.size(); i++) hash(array.get(i), digest, visited);
+        }
+        else if (base instanceof COSString) {
+            digest.update((byte)'t');
+            byte[] b = ((COSString)base).getBytes();
+            update(digest, Integer.toString(b.length));
+            digest.update(b);
+        }
+        else if (base instanceof COSName) {
+            digest.update((byte)'n');
+            update(digest, ((COSName)base).getName());
+        }
+        else {
+            // numbers and booleans
+            digest.update((byte)'v');
+            update(digest, base.toString());
+        }
+    }
+
+    static void update(MessageDigest digest, String s) {
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+
+    static class Entry {
+        final String key;
+        final PDFont font;
+        final long programBytes;
+        // glyph outline bounds by code, in glyph space. only used by the handle that borrowed the font
+        final Map<Integer, Rectangle2D> bounds = new HashMap<>();
+        long bytes;
+
+        Entry(String key, PDFont font, long programBytes) {
+            this.key = key;
+            this.font = font;
+            this.programBytes = programBytes;
+        }
+    }
+
+    // the fonts of one document handle, which it borrows from the cache when PDFBox asks for them.
+    // the other resources go to the cache the handle had before.
+    static class Lease implements ResourceCache {
+        final FontCache cache;
+        final ResourceCache resources;
+        final GlyphBoundsCache glyphBounds;
+        final Map<COSObject, String> keys = new HashMap<>(); // null for fonts that are not cached
+        final Map<COSObject, Entry> fonts = new HashMap<>();
+        final Map<String, Entry> byKey = new HashMap<>();
+
+        Lease(FontCache cache, ResourceCache resources, GlyphBoundsCache glyphBounds) {
+            this.cache = cache;
+            this.resources = resources;
+            this.glyphBounds = glyphBounds;
+        }
+
+        @Override
+        public PDFont getFont(COSObject indirect) throws IOException {
+            Entry entry = fonts.get(indirect);
+            if (entry != null) return entry.font;
+            String key;
+            if (keys.containsKey(indirect)) key = keys.get(indirect);
+            else {
+                key = indirect.getObject() instanceof COSDictionary ? FontCache.key((COSDictionary)indirect.getObject()) : null;
+                keys.put(indirect, key);
+            }
+            if (key == null) return resources == null ? null : resources.getFont(indirect);
+
+            entry = byKey.get(key);
+            if (entry == null) {
+                entry = cache.borrow(key);
+                if (entry == null) return null; // PDFBox parses it and puts it here
+                byKey.put(key, entry);
+                glyphBounds.putAll(entry.font.getCOSObject(), entry.bounds);
+            }
+            fonts.put(indirect, entry);
+            return entry.font;
+        }
+
+        @Override
+        public void put(COSObject indirect, PDFont font) throws IOException {
+            String key = keys.get(indirect);
+            if (key == null) {
+                if (resources != null) resources.put(indirect, font);
+                return;
+            }
+            Entry entry = new Entry(key, font, programBytes(font.getCOSObject()));
+            fonts.put(indirect, entry);
+            byKey.put(key, entry);
+        }
+
+        // gives the fonts back to the cache, with the glyph bounds the handle has found
+        void release() {
+            Map<COSDictionary, Map<Integer, Rectangle2D>> bounds = new IdentityHashMap<>();
+            for (Entry entry : byKey.values()) bounds.put(entry.font.getCOSObject(), entry.bounds);
+            glyphBounds.copyTo(bounds);
+            for (Entry entry : byKey.values()) cache.giveBack(entry);
+            byKey.clear();
+            fonts.clear();
+        }
+
+        @Override
+        public PDColorSpace getColorSpace(COSObject indirect) throws IOException {
+            return resources == null ? null : resources.getColorSpace(indirect);
+        }
+
+        @Override
+        public PDExtendedGraphicsState getExtGState(COSObject indirect) {
+            return resources == null ? null : resources.getExtGState(indirect);
+        }
+
+        @Override
+        public PDShading getShading(COSObject indirect) throws IOException {
+            return resources == null ? null : resources.getShading(indirect);
+        }
+
+        @Override
+        public PDAbstractPattern getPattern(COSObject indirect) throws IOException {
+            return resources == null ? null : resources.getPattern(indirect);
+        }
+
+        @Override
+        public PDPropertyList getProperties(COSObject indirect) {
+            return resources == null ? null : resources.getProperties(indirect);
+        }
+
+        @Override
+        public PDXObject getXObject(COSObject indirect) throws IOException {
+            return resources == null ? null : resources.getXObject(indirect);
+        }
+
+        @Override
+        public void put(COSObject indirect, PDColorSpace colorSpace) throws IOException {
+            if (resources != null) resources.put(indirect, colorSpace);
+        }
+
+        @Override
+        public void put(COSObject indirect, PDExtendedGraphicsState extGState) {
+            if (resources != null) resources.put(indirect, extGState);
+        }
+
+        @Override
+        public void put(COSObject indirect, PDShading shading) throws IOException {
+            if (resources != null) resources.put(indirect, shading);
+        }
+
+        @Override
+        public void put(COSObject indirect, PDAbstractPattern pattern) throws IOException {
+            if (resources != null) resources.put(indirect, pattern);
+        }
+
+        @Override
+        public void put(COSObject indirect, PDPropertyList propertyList) {
+            if (resources != null) resources.put(indirect, propertyList);
+        }
+
+        @Override
+        public void put(COSObject indirect, PDXObject xobject) throws IOException {
+            if (resources != null) resources.put(indirect, xobject);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.pdmodel.font.*;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.io.InputStream;
+
+// values of a font that showFontGlyph reads for every glyph, computed on the first glyph of the font.
+// instances are cached per document handle in DocumentContext.
+public class FontMetrics {
+
+    // the glyph list does not change after loading and caches its lookups in a ConcurrentHashMap,
+    // so one instance serves all pages and threads
+    static final GlyphList GLYPH_LIST = loadGlyphList();
+
+    final String name;
+    final float bboxLowerLeftY;
+    final float bboxHeight;
+    final boolean type3;
+    final AffineTransform fontMatrix; // glyph space -> text space
+    double unitsPerEmScale = Double.NaN; // only read for glyph coordinates, see glyphScale()
+
+    FontMetrics(PDFont font) throws IOException {
+        this.name = font.getName();
+        // taken from LegacyPDFStreamEngine.showGlyph
+        BoundingBox bbox = font.getBoundingBox();
+        if (bbox.getLowerLeftY() < -32768.0F) {
+            bbox.setLowerLeftY(-(bbox.getLowerLeftY() + 65536.0F));
+        }
+        this.bboxLowerLeftY = bbox.getLowerLeftY();
+        this.bboxHeight = bbox.getHeight();
+        this.type3 = font instanceof PDType3Font;
+        this.fontMatrix = font.getFontMatrix().createAffineTransform();
+    }
+
+    static GlyphList loadGlyphList() {
+        String path = "org/apache/pdfbox/resources/glyphlist/additional.txt";
+        try (InputStream input = GlyphList.class.getClassLoader().getResourceAsStream(path)) {
+            return new GlyphList(GlyphList.getAdobeGlyphList(), input);
+        }
+        catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // scale of TrueType outlines to 1000 units per em, 1 for other fonts
+    double glyphScale(PDFont font) throws IOException {
+        if (Double.isNaN(unitsPerEmScale)) {
+            int unitsPerEm = 0;
+            if (font instanceof PDTrueTypeFont) {
+                unitsPerEm = ((PDTrueTypeFont)font).getTrueTypeFont().getHeader().getUnitsPerEm();
+            }
+            if (font instanceof PDType0Font) {
+                PDCIDFont descendant = ((PDType0Font)font).getDescendantFont();
+                if (descendant instanceof PDCIDFontType2) {
+                    unitsPerEm = ((PDCIDFontType2)descendant).getTrueTypeFont().getHeader().getUnitsPerEm();
+                }
+            }
+            unitsPerEmScale = unitsPerEm == 0 ? 1 : 1000d / unitsPerEm;
+        }
+        return unitsPerEmScale;
+    }
+}
@@ -0,0 +1,82 @@
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+import java.awt.geom.Rectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// bounds of glyph outlines in glyph space, keyed by font and character code.
+// the font is identified by its dictionary, which stays the same even if PDFBox creates the PDFont again.
+// one cache is used by all pages of a document handle, so it is not thread-safe.
+public class GlyphBoundsCache {
+
+    // marks glyphs without outline so that they are not looked up again
+    static final Rectangle2D NO_PATH = new Rectangle2D.Float();
+
+    final Map<Key, Rectangle2D> map;
+    long hits = 0;
+    long misses = 0;
+
+    public GlyphBoundsCache(int maxEntries) {
+        this.map = new LinkedHashMap<Key, Rectangle2D>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Rectangle2D> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // returns null if the glyph is not cached
+    Rectangle2D get(PDFont font, int code) {
+        Rectangle2D bounds = map.get(new Key(font.getCOSObject(), code));
+        if (bounds == null) misses++;
+        else hits++;
+        return bounds;
+    }
+
+    void put(PDFont font, int code, Rectangle2D bounds) {
+        map.put(new Key(font.getCOSObject(), code), bounds);
+    }
+
+    // bounds found elsewhere for the glyphs of font, e.g. by another document with the same font
+    void putAll(COSDictionary font, Map<Integer, Rectangle2D> bounds) {
+        for (Map.Entry<Integer, Rectangle2D> e : bounds.entrySet()) map.put(new Key(font, e.getKey()), e.getValue());
+    }
+
+    // adds the cached bounds of the given fonts to their maps
+    void copyTo(Map<COSDictionary, Map<Integer, Rectangle2D>> fonts) {
+        for (Map.Entry<Key, Rectangle2D> e : map.entrySet()) {
+            Map<Integer, Rectangle2D> bounds = fonts.get(e.getKey().font);
+            if (bounds != null) bounds.put(e.getKey().code, e.getValue());
+        }
+    }
+
+    public long hits() { return hits; }
+
+    public long misses() { return misses; }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + "\tmisses=" + misses + "\tsize=" + map.size();
+    }
+
+    static class Key {
+        final COSDictionary font;
+        final int code;
+
+        Key(COSDictionary font, int code) {
+            this.font = font;
+            this.code = code;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Key == false) return false;
+            Key k = (Key)obj;
+            return font == k.font && code == k.code;
+        }
+
+        @Override
+        public int hashCode() { return System.identityHashCode(font) * 31 + code; }
+    }
+}
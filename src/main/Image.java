@@ -1,13 +0,0 @@
-public class Image {
-    float x;
-    float y;
-    float w;
-    float h;
-
-    public Image(float x, float y, float w, float h) {
-        this.x = x;
-        this.y = y;
-        this.w = w;
-        this.h = h;
-    }
-}
\ No newline at end of file
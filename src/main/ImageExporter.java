@@ -0,0 +1,102 @@
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// writes the images of -imageDir.
+// JPEG and JPEG 2000 streams are copied as they are encoded, other images are decoded and written as PNG.
+// a file is named by the SHA-1 of its bytes, so an image is written once however often it is drawn,
+// and an XObject that a document draws again is recognized by its stream before anything is read.
+public class ImageExporter {
+
+    final Path dir;
+    // files of the XObjects of one document handle, streams are compared by identity
+    final Map<COSStream, String> files = new IdentityHashMap<>();
+
+    public ImageExporter(String dir) {
+        this.dir = Paths.get(dir);
+    }
+
+    // the name of the file in dir, or null if the image cannot be decoded
+    String export(PDImageXObject image) throws IOException {
+        COSStream stream = image.getCOSObject();
+        String file = files.get(stream);
+        if (file == null && !files.containsKey(stream)) {
+            file = write(image);
+            files.put(stream, file);
+        }
+        return file;
+    }
+
+    String write(PDImageXObject image) throws IOException {
+        byte[] data;
+        String extension;
+        List<COSName> filters = image.getStream().getFilters();
+        COSName filter = filters.size() == 1 ? filters.get(0) : null;
+        if (COSName.DCT_DECODE.equals(filter) || COSName.JPX_DECODE.equals(filter)) {
+            try (InputStream in = image.getCOSObject().createRawInputStream()) {
+                data = IOUtils.toByteArray(in);
+            }
+            extension = COSName.DCT_DECODE.equals(filter) ? "jpg" : "jp2";
+        }
+        else {
+            BufferedImage decoded;
+            try {
+                decoded = image.getImage();
+            }
+            catch (IOException e) {
+                return null; // e.g. JBIG2 without a decoder
+            }
+            if (decoded == null) return null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(decoded, "png", out);
+            data = out.toByteArray();
+            extension = "png";
+        }
+
+        String name = sha1(data) + "." + extension;
+        Path target = dir.resolve(name);
+        if (!Files.exists(target)) {
+            // several threads and processes may write the same image, each through a file of its own.
+            // not createTempFile, whose files are only readable by the owner
+            Files.createDirectories(dir);
+            Path tmp = dir.resolve(name + "." + UUID.randomUUID() + ".tmp");
+            try {
+                Files.write(tmp, data, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return name;
+    }
+
+    static String sha1(byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// work ledger of processes, possibly on several machines, that extract the same directory together (-ledger).
+// the ledger is a directory on a filesystem that all of them see, with
+//   files      "claim=N<tab>options", then the PDF files relative to the input directory, written by the first process.
+//              batch i is the files i*N to (i+1)*N-1
+//   claims/i   created exclusively by the process working on batch i, and touched while it works on it
+//   done/i     created when batch i is processed: worker, files and milliseconds
+//   failed/i   the files of batch i whose output could not be written, one per line
+// a claim that was not touched for the lease time is left by a crashed process, and is taken over by another one.
+// like files missing from the manifest, failed files are tried again, by processes started after they failed;
+// the processes of the run that saw them fail do not, so that a broken file is not tried over and over.
+// only creating a file exclusively, hard links and renames are relied on to be atomic.
+// one pool extracts the batches of a process one after another: the next batch is claimed when the workers are about to
+// run out of documents, and a batch is completed when the last of its documents is reported.
+public class Ledger implements Closeable, Batch.Listener {
+
+    static final String FILES = "files";
+
+    final Path dir;
+    final Path claims;
+    final Path done;
+    final Path failed;
+    final long started = System.currentTimeMillis();
+    final String worker = ManagementFactory.getRuntimeMXBean().getName(); // pid@host
+    final int claimSize;
+    final long leaseMillis;
+    final List<String> files = new ArrayList<>();
+    final BitSet finished = new BitSet(); // batches known to be done, only used by claim()
+    final Set<Integer> held = ConcurrentHashMap.newKeySet();
+    final ArrayDeque<Running> running = new ArrayDeque<>(); // claimed batches in submission order, guarded by this
+    int waiting = 0; // documents submitted and not extracted yet, guarded by this
+    final ScheduledExecutorService heartbeat;
+
+    public Ledger(Path dir, Path root, String options, int claimSize, long leaseMillis) throws IOException {
+        this.dir = dir;
+        this.claims = dir.resolve("claims");
+        this.done = dir.resolve("done");
+        this.failed = dir.resolve("failed");
+        this.leaseMillis = leaseMillis;
+        Files.createDirectories(claims);
+        Files.createDirectories(done);
+        Files.createDirectories(failed);
+
+        Path list = dir.resolve(FILES);
+        if (!Files.exists(list)) create(list, root, options, claimSize);
+        try (BufferedReader reader = Files.newBufferedReader(list, StandardCharsets.UTF_8)) {
+            String[] header = reader.readLine().split("\t", 2);
+            if (!header[1].equals(options)) throw new IOException("ledger " + dir + " is for other options: " + header[1]);
+            this.claimSize = Integer.parseInt(header[0].substring("claim=".length()));
+            String line;
+            while ((line = reader.readLine()) != null) files.add(line);
+        }
+
+        // claims are touched several times per lease, so that a slow file system does not lose them
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ledger-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(leaseMillis / 4, 1);
+        heartbeat.scheduleAtFixedRate(this::touchClaims, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // the list is written to a file of this process and linked to its name, which fails if another process was first
+    void create(Path list, Path root, String options, int claimSize) throws IOException {
+        List<String> names = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.toString().endsWith(".pdf")) names.add(root.relativize(file).toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(names);
+        Path tmp = dir.resolve(FILES + "." + worker + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            w.write("claim=" + claimSize + "\t" + options + "\n");
+            for (String name : names) w.write(name + "\n");
+        }
+        try {
+            Files.createLink(list, tmp);
+        }
+        catch (FileAlreadyExistsException e) {
+            // the list of another process is used
+        }
+        finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    int batches() { return (files.size() + claimSize - 1) / claimSize; }
+
+    List<String> batch(int i) {
+        return files.subList(i * claimSize, Math.min((i + 1) * claimSize, files.size()));
+    }
+
+    // the files to extract for a claimed batch: all of them, or those that failed in an earlier run
+    List<String> work(int i) throws IOException {
+        if (!Files.exists(done.resolve(Integer.toString(i)))) return batch(i);
+        return Files.readAllLines(failed.resolve(Integer.toString(i)), StandardCharsets.UTF_8);
+    }
+
+    // done, and without failed files that this process tries again
+    boolean isFinished(int i) throws IOException {
+        if (!Files.exists(done.resolve(Integer.toString(i)))) return false;
+        try {
+            return Files.getLastModifiedTime(failed.resolve(Integer.toString(i))).toMillis() >= started;
+        }
+        catch (NoSuchFileException e) {
+            return true;
+        }
+    }
+
+    // claims the first batch that is neither finished nor held by a live process, and returns it.
+    // waits while the only batches left are held by others, which may crash. returns -1 when every batch is finished.
+    int claim() throws IOException, InterruptedException {
+        while (true) {
+            boolean pending = false;
+            for (int i = finished.nextClearBit(0); i < batches(); i = finished.nextClearBit(i + 1)) {
+                if (held.contains(i)) continue; // finished by this process without waiting
+                if (isFinished(i)) {
+                    finished.set(i);
+                    continue;
+                }
+                if (tryClaim(i)) {
+                    // another process may have finished it between the check and the claim
+                    if (!isFinished(i)) return i;
+                    release(i);
+                    finished.set(i);
+                    continue;
+                }
+                pending = true;
+            }
+            if (!pending) return -1;
+            Thread.sleep(Math.min(Math.max(leaseMillis / 10, 100), 10_000));
+        }
+    }
+
+    boolean tryClaim(int i) throws IOException {
+        Path claim = claims.resolve(Integer.toString(i));
+        try {
+            Files.write(claim, worker.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            held.add(i);
+            return true;
+        }
+        catch (FileAlreadyExistsException e) {
+            // held by another process, or left by a crashed one
+        }
+        try {
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(claim).toMillis() < leaseMillis) return false;
+            if (isFinished(i)) return false;
+            // of the processes that find the claim expired, only one can move it away
+            Path expired = claims.resolve(i + "." + worker + ".expired");
+            Files.move(claim, expired, StandardCopyOption.ATOMIC_MOVE);
+            String owner = new String(Files.readAllBytes(expired), StandardCharsets.UTF_8);
+            Files.delete(expired);
+            System.err.println("ledger: batch " + i + " of " + owner + " expired");
+        }
+        catch (NoSuchFileException e) {
+            return false; // done, or taken over by another process meanwhile
+        }
+        return tryClaim(i);
+    }
+
+    void touchClaims() {
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        for (int i : held) {
+            try {
+                Files.setLastModifiedTime(claims.resolve(Integer.toString(i)), now);
+            }
+            catch (IOException e) {
+                // taken over after a pause longer than the lease, the batch is finished anyway
+                System.err.println("ledger: claim of batch " + i + " lost: " + e);
+                held.remove(i);
+            }
+        }
+    }
+
+    // waits until at most documents are submitted and not extracted yet, queued or running
+    synchronized void awaitWaiting(int documents) throws InterruptedException {
+        while (waiting > documents) wait();
+    }
+
+    // the files of claimed batch i are submitted next, in this order
+    void submitting(int i, List<String> work) throws IOException {
+        if (work.isEmpty()) {
+            complete(i, work, 0);
+            return;
+        }
+        synchronized (this) {
+            running.add(new Running(i, work.size()));
+            waiting += work.size();
+        }
+    }
+
+    @Override
+    public synchronized void extracted(DocumentSource source) {
+        waiting--;
+        notifyAll();
+    }
+
+    // documents are reported in submission order, so they are those of the oldest running batch
+    @Override
+    public void reported(DocumentSource source, boolean failed) {
+        Running batch;
+        synchronized (this) {
+            batch = running.peek();
+            if (failed) batch.failed.add(source.name);
+            if (--batch.remaining > 0) return;
+            running.poll();
+        }
+        try {
+            complete(batch.index, batch.failed, (System.nanoTime() - batch.start) / 1_000_000);
+        }
+        catch (IOException e) {
+            // the claim expires and another process does the batch again
+            System.err.println("ledger: batch " + batch.index + " not recorded: " + e);
+        }
+    }
+
+    // records that batch i is processed, with the files that failed, and prints the progress of all processes
+    void complete(int i, List<String> failedFiles, long millis) throws IOException {
+        // before the claim is released, so that no process of this run claims the batch again
+        Path failedList = failed.resolve(Integer.toString(i));
+        if (failedFiles.isEmpty()) Files.deleteIfExists(failedList);
+        else {
+            Path tmp = failed.resolve(i + "." + worker + ".tmp");
+            Files.write(tmp, failedFiles, StandardCharsets.UTF_8);
+            Files.move(tmp, failedList, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        try {
+            Files.write(done.resolve(Integer.toString(i)), (worker + "\t" + batch(i).size() + "\t" + millis + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+        catch (FileAlreadyExistsException e) {
+            // also done by a process that took over the claim
+        }
+        release(i);
+        System.err.println("ledger: " + progress());
+    }
+
+    // deletes the claim of batch i if it is still this process's. a process that was paused for longer than the lease
+    // has lost the claim to another one, which works on the batch and must keep it
+    void release(int i) throws IOException {
+        held.remove(i);
+        Path claim = claims.resolve(Integer.toString(i));
+        try {
+            String owner = new String(Files.readAllBytes(claim), StandardCharsets.UTF_8);
+            if (owner.equals(worker)) Files.deleteIfExists(claim);
+            else System.err.println("ledger: claim of batch " + i + " was lost to " + owner);
+        }
+        catch (NoSuchFileException e) {
+            // taken over and released meanwhile
+        }
+    }
+
+    // batches and files done by all processes, failed files, and batches being worked on
+    String progress() throws IOException {
+        int doneBatches = 0;
+        int doneFiles = 0;
+        int failedFiles = 0;
+        try (Stream<Path> entries = Files.list(done)) {
+            for (Path p : (Iterable<Path>)entries::iterator) {
+                doneBatches++;
+                doneFiles += batch(Integer.parseInt(p.getFileName().toString())).size();
+            }
+        }
+        try (Stream<Path> entries = Files.list(failed)) {
+            for (Path p : (Iterable<Path>)entries::iterator) {
+                if (p.getFileName().toString().contains(".")) continue;
+                try {
+                    failedFiles += Files.readAllLines(p, StandardCharsets.UTF_8).size();
+                }
+                catch (NoSuchFileException e) {
+                    // retried meanwhile
+                }
+            }
+        }
+        long claimed;
+        try (Stream<Path> entries = Files.list(claims)) {
+            claimed = entries.filter(p -> !p.getFileName().toString().contains(".")).count();
+        }
+        return doneBatches + "/" + batches() + " batches, " + (doneFiles - failedFiles) + "/" + files.size() + " files done, "
+                + failedFiles + " failed, " + claimed + " claimed";
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+    }
+
+    static class Running {
+        final int index;
+        final long start = System.nanoTime();
+        final List<String> failed = new ArrayList<>();
+        int remaining; // documents not reported yet
+
+        Running(int index, int files) {
+            this.index = index;
+            this.remaining = files;
+        }
+    }
+}
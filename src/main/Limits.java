@@ -0,0 +1,52 @@
+// limits of -limits, a comma separated list of name=value:
+//   time, pageTime              wall time in seconds of the document and of a page
+//   operators, pageOperators    content stream operators, including those of forms and Type3 glyphs
+//   glyphs, pageGlyphs          extracted characters
+//   pageHeap                    estimated size in MB of the items of a page
+// limits that are not given are unlimited.
+public class Limits {
+
+    static final Limits NONE = new Limits();
+
+    long time = Long.MAX_VALUE; // nanoseconds
+    long pageTime = Long.MAX_VALUE;
+    long operators = Long.MAX_VALUE;
+    long pageOperators = Long.MAX_VALUE;
+    long glyphs = Long.MAX_VALUE;
+    long pageGlyphs = Long.MAX_VALUE;
+    long pageHeap = Long.MAX_VALUE; // bytes
+
+    public static Limits parse(String spec) {
+        Limits limits = new Limits();
+        for (String item : spec.split(",")) {
+            String[] kv = item.trim().split("=", 2);
+            if (kv.length != 2) throw new IllegalArgumentException("invalid limit: " + item);
+            double value = Double.parseDouble(kv[1]);
+            switch (kv[0]) {
+                case "time": limits.time = (long)(value * 1e9); break;
+                case "pageTime": limits.pageTime = (long)(value * 1e9); break;
+                case "operators": limits.operators = (long)value; break;
+                case "pageOperators": limits.pageOperators = (long)value; break;
+                case "glyphs": limits.glyphs = (long)value; break;
+                case "pageGlyphs": limits.pageGlyphs = (long)value; break;
+                case "pageHeap": limits.pageHeap = (long)(value * 1024 * 1024); break;
+                default: throw new IllegalArgumentException("unknown limit: " + kv[0]);
+            }
+        }
+        return limits;
+    }
+
+    // canonical form in the units of the engine, "none" for no limits
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        String[] names = { "time", "pageTime", "operators", "pageOperators", "glyphs", "pageGlyphs", "pageHeap" };
+        long[] values = { time, pageTime, operators, pageOperators, glyphs, pageGlyphs, pageHeap };
+        for (int i = 0; i < names.length; i++) {
+            if (values[i] == Long.MAX_VALUE) continue;
+            if (s.length() > 0) s.append(',');
+            s.append(names[i]).append('=').append(values[i]);
+        }
+        return s.length() == 0 ? "none" : s.toString();
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// record of the files of a directory that were extracted, so that a later run skips the unchanged ones.
+// one line per file with tab separated size, mtime, SHA-256 of the content, options and path relative to the root.
+// lines are appended as files finish, so an interrupted run resumes after the last finished file,
+// and the last line of a file wins. close() rewrites the manifest without the superseded lines.
+public class Manifest implements Closeable {
+
+    static final String FILE_NAME = ".pdfextract-manifest";
+
+    final Path root;
+    final Path file;
+    final String options;
+    final boolean force; // every file is extracted again, and recorded
+    final Map<String, Entry> entries = new LinkedHashMap<>();
+    final Writer log;
+
+    public Manifest(Path root, String options, boolean force) throws IOException {
+        this.root = root;
+        this.file = root.resolve(FILE_NAME);
+        this.options = options;
+        this.force = force;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // a line cut off by an interruption has fewer fields and is ignored
+                    String[] fields = line.split("\t", 5);
+                    if (fields.length < 5) continue;
+                    try {
+                        entries.put(fields[4], new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2], fields[3]));
+                    }
+                    catch (NumberFormatException e) { }
+                }
+            }
+        }
+        this.log = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file.toFile(), true), StandardCharsets.UTF_8));
+    }
+
+    // the entry for the current content of file, or null if its output is up to date.
+    // the content is only hashed when size or mtime changed since the last run, or when it is extracted.
+    Entry check(Path file, Path output) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attrs.size(), mtime = attrs.lastModifiedTime().toMillis();
+        String key = key(file);
+        Entry last;
+        synchronized (this) {
+            last = entries.get(key);
+        }
+        boolean upToDate = !force && last != null && last.options.equals(options) && Files.exists(output);
+        if (upToDate && last.size == size && last.mtime == mtime) return null;
+        Entry entry = new Entry(size, mtime, hash(file), options);
+        if (upToDate && last.hash.equals(entry.hash)) {
+            // touched, but the same content
+            record(file, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    synchronized void record(Path file, Entry entry) throws IOException {
+        String key = key(file);
+        entries.put(key, entry);
+        log.write(entry.size + "\t" + entry.mtime + "\t" + entry.hash + "\t" + entry.options + "\t" + key + "\n");
+        log.flush();
+    }
+
+    String key(Path file) {
+        return root.relativize(file).toString();
+    }
+
+    static String hash(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) digest.update(buffer, 0, n);
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // compacts the log to one line per file
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                w.write(entry.size + "\t" + entry.mtime + "\t" + entry.hash + "\t" + entry.options + "\t" + e.getKey() + "\n");
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static class Entry {
+        final long size;
+        final long mtime;
+        final String hash;
+        final String options;
+
+        Entry(long size, long mtime, String hash, String options) {
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
+            this.options = options;
+        }
+    }
+}
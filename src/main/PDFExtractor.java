@@ -1,25 +1,18 @@
 import javafx.beans.binding.ObjectExpression;
-import org.apache.fontbox.ttf.TrueTypeFont;
 import org.apache.fontbox.util.BoundingBox;
 import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
-import org.apache.pdfbox.contentstream.PDFStreamEngine;
-import org.apache.pdfbox.contentstream.operator.DrawObject;
 import org.apache.pdfbox.contentstream.operator.Operator;
-import org.apache.pdfbox.contentstream.operator.state.*;
 import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.ResourceCache;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.*;
-import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
-import org.apache.pdfbox.pdmodel.graphics.PDXObject;
-import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
-import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
 import org.apache.pdfbox.pdmodel.interactive.pagenavigation.PDThreadBead;
 import org.apache.pdfbox.rendering.PDFRenderer;
-import org.apache.pdfbox.text.TextPosition;
 import org.apache.pdfbox.util.Matrix;
 import org.apache.pdfbox.util.Vector;
 
@@ -32,89 +25,301 @@ import java.awt.geom.Rectangle2D;
 import java.io.*;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class PDFExtractor extends PDFGraphicsStreamEngine {
 
-    static boolean useText = false;
-    static boolean useDraw = false;
-    static boolean useImage = false;
-    static boolean useFontName = false;
-    static boolean useBounding = false;
-    static boolean useGlyph = false;
+    static int threads = 1;
+    static int pageThreads = 1;
+    static boolean cacheStats = false;
+    static boolean lowMemory = false;
+    static boolean force = false; // -force
+    static boolean gzip = false; // -gzip
+    static Path outputArchive = null; // -outputArchive
+    static int bufferSize = 64 * 1024; // of archives and output files
+    static boolean pipeline = false; // -pipeline
+    static ExtractionStats stats = null; // -stats
+    static FontCache fontCache = null; // -fontCache
+    static Path ledger = null; // -ledger
+    static int claimSize = 16; // -claim, files per batch of the ledger
+    static long leaseMillis = 300_000; // -lease
+    static MemoryUsageSetting memoryUsage = MemoryUsageSetting.setupMainMemoryOnly();
+
+    static final int GLYPH_CACHE_SIZE = 4096;
+    static final int LOW_MEMORY_FONTS = 32;
+    static final int TIME_CHECK_INTERVAL = 64; // operators between reads of the clock
 
     public static void main(String[] args) throws IOException {
         Path path = Paths.get(args[0]);
-        for (String arg : args) {
-            if (arg.equals("-text")) useText = true;
-            else if (arg.equals("-draw")) useDraw = true;
-            else if (arg.equals("-image")) useImage = true;
-            else if (arg.equals("-fontName")) useFontName = true;
-            else if (arg.equals("-bounding")) useBounding = true;
-            else if (arg.equals("-glyph")) useGlyph = true;
-        }
-        if (!useText && !useDraw && !useImage) useText = useDraw = useImage = true;
-
-        if (Files.isDirectory(path)) {
-            FileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    if (file.toString().endsWith(".pdf")) {
-                        String outPath = file.toString() + "txt";
-                        System.out.println(file.toFile());
-                        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outPath), "UTF-8"))) {
-                            processFile(file, w);
+        ExtractionPlan plan = ExtractionPlan.parse(args);
+        configure(args, 1);
+
+        if (Files.isDirectory(path) && ledger != null) {
+            processLedger(path, plan);
+        }
+        else if (Files.isDirectory(path)) {
+            // options above are only written before the workers start, so they can stay static.
+            // the manifest tracks outputs next to the files, which are not written with an output archive
+            try (Manifest manifest = outputArchive == null ? new Manifest(path, plan.toString(), force) : null;
+                 BatchOutput output = new BatchOutput(plan, manifest, outputArchive);
+                 Batch batch = batch(plan, output)) {
+                FileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        if (file.toString().endsWith(".pdf")) {
+                            try {
+                                batch.submit(new DocumentSource(file, path.relativize(file).toString(), null));
+                            }
+                            catch (InterruptedException e) {
+                                return FileVisitResult.TERMINATE;
+                            }
                         }
-                        catch (Exception e) { }
+                        return FileVisitResult.CONTINUE;
                     }
-                    return FileVisitResult.CONTINUE;
+                };
+                Files.walkFileTree(path, visitor);
+            }
+        }
+        else if (ArchiveReader.isArchive(path)) {
+            Path archivePath = outputArchive != null ? outputArchive : Paths.get(path + (plan.binary ? ".pdfbin" : ".pdftxt") + ".zip");
+            try (ArchiveReader archive = new ArchiveReader(path, bufferSize);
+                 BatchOutput output = new BatchOutput(plan, null, archivePath);
+                 Batch batch = batch(plan, output)) {
+                ArchiveReader.Entry entry;
+                while ((entry = archive.next()) != null) {
+                    batch.submit(new DocumentSource(path.resolve(entry.name), entry.name, entry.data));
                 }
-            };
-            Files.walkFileTree(path, visitor);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
         else {
-            try (Writer w = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"))) {
-                processFile(path, w);
+            try (OutputStream out = new BufferedOutputStream(System.out)) {
+                processFile(path, out, plan);
+            }
+            catch (Exception e) {
+                System.err.println(path + ": " + e);
+            }
+        }
+        if (stats != null) System.err.println(stats.toJson());
+        if (cacheStats && fontCache != null) System.err.println("fontCache\t" + fontCache);
+    }
+
+    // extracts the batches of the directory that no other process of the ledger has claimed, on one pool.
+    // the next batch is claimed when the workers are about to run out of documents, not when the last batch is done.
+    // outputs are next to the files as without a ledger, but the manifest is not used, a new ledger is a new run
+    static void processLedger(Path path, ExtractionPlan plan) throws IOException {
+        if (outputArchive != null) throw new IllegalArgumentException("-ledger writes the output of each file, not -outputArchive");
+        // closed in reverse order: the batch reports its last documents to the ledger before the ledger is closed
+        try (Ledger l = new Ledger(ledger, path, plan.toString(), claimSize, leaseMillis);
+             BatchOutput output = new BatchOutput(plan, null, null);
+             Batch batch = batch(plan, output, l)) {
+            while (true) {
+                l.awaitWaiting(2 * threads); // at most one queued document per worker
+                int i = l.claim();
+                if (i < 0) break;
+                List<String> work = l.work(i);
+                l.submitting(i, work);
+                for (String name : work) batch.submit(new DocumentSource(path.resolve(name), name, null));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static Batch batch(ExtractionPlan plan, BatchOutput output) {
+        return batch(plan, output, null);
+    }
+
+    static Batch batch(ExtractionPlan plan, BatchOutput output, Batch.Listener listener) {
+        if (pipeline) return new ExtractionPipeline(plan, threads, threads * 2, output, listener);
+        return new BatchProcessor(plan, threads, threads * 4, output, listener);
+    }
+
+    // options that apply to the whole process, from args[from] on. unknown arguments are skipped.
+    static void configure(String[] args, int from) {
+        long maxMemory = -1;
+        File scratchDir = null;
+        for (int i = from; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-threads")) threads = Integer.parseInt(args[++i]);
+            else if (arg.equals("-pageThreads")) pageThreads = Integer.parseInt(args[++i]);
+            else if (arg.equals("-cacheStats")) cacheStats = true;
+            else if (arg.equals("-lowMemory")) lowMemory = true;
+            else if (arg.equals("-maxMemory")) maxMemory = Long.parseLong(args[++i]) * 1024 * 1024;
+            else if (arg.equals("-scratchDir")) scratchDir = new File(args[++i]);
+            else if (arg.equals("-stats")) stats = new ExtractionStats();
+            else if (arg.equals("-force")) force = true;
+            else if (arg.equals("-pipeline")) pipeline = true;
+            else if (arg.equals("-gzip")) gzip = true;
+            else if (arg.equals("-outputArchive")) outputArchive = Paths.get(args[++i]);
+            else if (arg.equals("-bufferSize")) bufferSize = Integer.parseInt(args[++i]) * 1024;
+            else if (arg.equals("-ledger")) ledger = Paths.get(args[++i]);
+            else if (arg.equals("-claim")) claimSize = Integer.parseInt(args[++i]);
+            else if (arg.equals("-lease")) leaseMillis = Long.parseLong(args[++i]) * 1000;
+            else if (arg.equals("-fontCache")) fontCache = new FontCache(Long.parseLong(args[++i]) * 1024 * 1024);
+        }
+        if (maxMemory >= 0) lowMemory = true;
+        if (lowMemory) {
+            // streams beyond the budget go to a scratch file instead of the heap
+            memoryUsage = maxMemory > 0 ? MemoryUsageSetting.setupMixed(maxMemory) : MemoryUsageSetting.setupTempFileOnly();
+            memoryUsage.setTempDir(scratchDir);
+        }
+    }
+
+    // extracts only the given pages; content streams, fonts and images of the other pages are never read
+    public static void processFile(Path path, OutputStream out, ExtractionPlan plan, PageSet pages) throws IOException {
+        processFile(path, out, plan.withPages(pages));
+    }
+
+    static void processFile(Path path, OutputStream out, ExtractionPlan plan) throws IOException {
+        processFile(new DocumentSource(path), out, plan);
+    }
+
+    static void processFile(DocumentSource source, OutputStream out, ExtractionPlan plan) throws IOException {
+        FileStats fileStats = null;
+        if (stats != null) {
+            fileStats = new FileStats(source.path);
+            out = new ExtractionStats.CountingOutputStream(out);
+        }
+        long start = System.nanoTime();
+        PageWriter w = PageWriter.create(out, plan);
+        try {
+            w.begin();
+            boolean complete;
+            if (pageThreads > 1) {
+                w.flush();
+                PageParallelExtractor extractor = new PageParallelExtractor(source, plan, pageThreads, fileStats);
+                extractor.process(out);
+                complete = extractor.budget.truncation() == null;
+            }
+            else complete = processPages(source, w, plan, fileStats);
+            // the output of a truncated document has no trailer
+            if (complete) w.end();
+        }
+        catch (IOException | RuntimeException e) {
+            if (fileStats != null) fileStats.failure = e;
+            throw e;
+        }
+        finally {
+            w.flush();
+            if (fileStats != null) {
+                fileStats.totalNanos = System.nanoTime() - start;
+                fileStats.bytes = ((ExtractionStats.CountingOutputStream)out).count;
+                stats.add(fileStats);
             }
-            catch (Exception e) { }
         }
     }
 
-    static void processFile(Path path, Writer w) throws IOException {
-        try (PDDocument doc = PDDocument.load(path.toFile())) {
-            for (int i = 0; i < doc.getNumberOfPages(); i++) {
-                PDFExtractor ext = new PDFExtractor(doc.getPage(i), i + 1, w);
-                ext.processPage(doc.getPage(i));
-                ext.write();
+    // streams the items of a document to the listener, nothing is buffered or serialized
+    public static void processFile(Path path, ExtractionListener listener, ExtractionPlan plan) throws IOException {
+        processPages(new DocumentSource(path), listener, new DocumentContext(plan), null);
+    }
+
+    // returns false if a limit truncated the document
+    static boolean processPages(DocumentSource source, PageWriter w, ExtractionPlan plan, FileStats fileStats) throws IOException {
+        DocumentContext context = new DocumentContext(plan);
+        return processPages(source, new PageWriterListener(w, context.buffer), context, fileStats);
+    }
+
+    static boolean processPages(DocumentSource source, ExtractionListener listener, DocumentContext context, FileStats fileStats) throws IOException {
+        try (PDDocument doc = load(source, fileStats)) {
+            context.open(doc);
+            for (int i : context.plan.pages.select(doc.getNumberOfPages())) {
+                extractPage(doc, i, listener, context, fileStats);
+                endPage(doc);
             }
         }
+        catch (BudgetExceededException e) {
+            // a limit of the document, the pages up to it are written
+        }
+        finally {
+            context.close();
+            reportTruncation(source.path, context.budget, fileStats);
+            if (cacheStats) System.err.println(source + "\t" + context.glyphBounds);
+        }
+        return context.budget.truncation() == null;
+    }
+
+    static void reportTruncation(Path path, Budget budget, FileStats fileStats) {
+        String truncation = budget.truncation();
+        if (truncation == null) return;
+        System.err.println(path + ": truncated, " + truncation);
+        if (fileStats != null) fileStats.truncated = truncation;
+    }
+
+    // an input file is read through a file-backed buffer in every mode, it is never loaded into the heap as a whole.
+    // archive entries are already in memory.
+    static PDDocument load(DocumentSource source, FileStats fileStats) throws IOException {
+        long start = System.nanoTime();
+        PDDocument doc = source.load(memoryUsage);
+        if (lowMemory) doc.setResourceCache(new PageResourceCache(LOW_MEMORY_FONTS));
+        if (fileStats != null) fileStats.addParse(System.nanoTime() - start);
+        return doc;
+    }
+
+    // extracts the i-th page of doc. throws BudgetExceededException after the page if a limit of the document is hit
+    static void extractPage(PDDocument doc, int i, ExtractionListener listener, DocumentContext context, FileStats fileStats) throws IOException {
+        PDPage page = doc.getPage(i);
+        long start = System.nanoTime();
+        PDFExtractor ext = new PDFExtractor(page, i + 1, listener, context);
+        ext.processPage(page);
+        if (fileStats != null) {
+            long interpret = System.nanoTime() - start - ext.endPageNanos;
+            fileStats.addPage(interpret, ext.endPageNanos, ext.glyphs, ext.draws, ext.images);
+        }
     }
 
-    Writer output;
+    // releases the resources of a page whose output is written
+    static void endPage(PDDocument doc) {
+        ResourceCache cache = doc.getResourceCache();
+        if (cache instanceof FontCache.Lease) cache = ((FontCache.Lease)cache).resources;
+        if (cache instanceof PageResourceCache) ((PageResourceCache)cache).endPage();
+    }
+
+    final ExtractionListener listener;
+    final ExtractionPlan plan;
     int pageIndex;
     int pageRotation;
     PDRectangle pageSize;
+    float pageHeight;
     Matrix translateMatrix;
-    final GlyphList glyphList;
-    List<Image> imageBuffer;
-    List<Object> buffer = new ArrayList<>();
+    final GlyphBoundsCache glyphBounds;
+    final Map<COSDictionary, FontMetrics> fontMetrics;
+    final Budget budget;
+    final ImageExporter imageExporter; // null without -imageDir
+    PDFont lastFont; // consecutive glyphs mostly share the font
+    FontMetrics lastMetrics;
+    int glyphs, draws, images; // items of this page
+    long operators, values; // operators and draw coordinates of this page
+    long pageStart;
+    long endPageNanos; // in the listener, i.e. writing the page
 
     AffineTransform flipAT;
     AffineTransform rotateAT;
     AffineTransform transAT;
 
     public PDFExtractor(PDPage page, int pageIndex, Writer output) throws IOException {
+        this(page, pageIndex, new PageWriterListener(new TsvWriter(output, ExtractionPlan.ALL), new PageBuffer()),
+                new DocumentContext(ExtractionPlan.ALL));
+    }
+
+    public PDFExtractor(PDPage page, int pageIndex, ExtractionListener listener, DocumentContext context) throws IOException {
         super(page);
         this.pageIndex = pageIndex;
-        this.output = output;
-
-        String path = "org/apache/pdfbox/resources/glyphlist/additional.txt";
-        InputStream input = GlyphList.class.getClassLoader().getResourceAsStream(path);
-        this.glyphList = new GlyphList(GlyphList.getAdobeGlyphList(), input);
+        this.listener = listener;
+        this.plan = context.plan;
+        this.glyphBounds = context.glyphBounds;
+        this.fontMetrics = context.fontMetrics;
+        this.budget = context.budget;
+        this.imageExporter = context.imageExporter;
 
         this.pageRotation = page.getRotation();
         this.pageSize = page.getCropBox();
+        this.pageHeight = pageSize.getHeight();
         if (this.pageSize.getLowerLeftX() == 0.0F && this.pageSize.getLowerLeftY() == 0.0F) {
             this.translateMatrix = null;
         } else {
@@ -150,116 +355,74 @@ public class PDFExtractor extends PDFGraphicsStreamEngine {
         }
         // cropbox
         transAT = AffineTransform.getTranslateInstance(-cropBox.getLowerLeftX(), cropBox.getLowerLeftY());
-
-        ImageExtractor ext = new ImageExtractor();
-        ext.processPage(page);
-        imageBuffer = ext.buffer;
     }
 
-    float getPageHeight() { return getPage().getCropBox().getHeight(); }
+    float getPageHeight() { return pageHeight; }
 
-    void addDraw(String op, float... values) {
-        if (useDraw) buffer.add(new Draw(op, values));
+    void addDraw(String op, float... values) throws IOException {
+        if (!plan.draw) return;
+        listener.path(op, values, values.length);
+        draws++;
+        this.values += values.length;
     }
 
-    void writeText(List<Text> textBuffer) throws IOException {
-        float averageW = 0;
-        for (Text t : textBuffer) averageW += t.bw;
-        averageW /= textBuffer.size();
-
-        Text prev = textBuffer.get(0);
-        for (Text curr : textBuffer) {
-            float expectedX = prev.bx + prev.bw + averageW * 0.3f;
-            if (curr.bx > expectedX) output.write("\n");
-            output.write(String.valueOf(pageIndex));
-            output.write("\tTEXT");
-            output.write("\t" + curr.unicode);
-            if (useBounding) {
-                output.write("\t" + String.valueOf(curr.bx));
-                output.write("\t" + String.valueOf(curr.by));
-                output.write("\t" + String.valueOf(curr.bw));
-                output.write("\t" + String.valueOf(curr.bh));
-            }
-            if (useGlyph) {
-                output.write("\t" + String.valueOf(curr.gx));
-                output.write("\t" + String.valueOf(curr.gy));
-                output.write("\t" + String.valueOf(curr.gw));
-                output.write("\t" + String.valueOf(curr.gh));
-            }
-            if (useFontName) output.write("\t" + curr.font.getName());
-            output.write("\n");
-
-            prev = curr;
+    @Override
+    public void processPage(PDPage page) throws IOException {
+        listener.startPage(pageIndex);
+        pageStart = System.nanoTime();
+        BudgetExceededException exceeded = null;
+        try {
+            super.processPage(page);
+        }
+        catch (BudgetExceededException e) {
+            exceeded = e;
+        }
+        // a truncated page is written with the items up to the limit
+        long start = System.nanoTime();
+        listener.endPage(pageIndex);
+        endPageNanos = System.nanoTime() - start;
+        budget.endPage(operators, glyphs);
+        if (exceeded != null) {
+            budget.truncated(pageIndex, exceeded.getMessage());
+            listener.truncated(pageIndex, exceeded.getMessage());
+            if (exceeded.document) throw exceeded;
         }
-        output.write("\n");
     }
 
-    void writeDraw(List<Draw> drawBuffer) throws IOException {
-        for (Draw d : drawBuffer) {
-            output.write(String.valueOf(pageIndex));
-            output.write("\tDRAW");
-            output.write("\t" + String.valueOf(d.op));
-            for (Float f : d.values)  output.write("\t" + String.valueOf(f));
-            output.write("\n");
-        }
-        output.write("\n");
+    // every operator passes here, also those of forms and Type3 glyphs, so the limits are checked here
+    @Override
+    protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
+        operators++;
+        checkBudget(0, operators % TIME_CHECK_INTERVAL == 0);
+        super.processOperator(operator, operands);
     }
 
-    void write() throws IOException {
-        int i = 0;
-        while (i < buffer.size()) {
-            Object obj = buffer.get(i);
-            if (obj instanceof Text) {
-                Text t0 = (Text)obj;
-                List<Text> textBuffer = new ArrayList<>();
-                while (i < buffer.size()) {
-                    obj = buffer.get(i);
-                    if (obj instanceof Text == false) break;
-                    Text t = (Text)obj;
-                    if (t.by != t0.by || t.bh != t0.bh) break;
-                    textBuffer.add(t);
-                    i++;
-                }
-                writeText(textBuffer);
-            }
-            else if (obj instanceof Draw) {
-                List<Draw> drawBuffer = new ArrayList<>();
-                while (i < buffer.size()) {
-                    obj = buffer.get(i);
-                    if (obj instanceof Draw == false) break;
-                    Draw d = (Draw)obj;
-                    drawBuffer.add(d);
-                    i++;
-                    if (d.op.endsWith("_PATH")) {
-                        writeDraw(drawBuffer);
-                        break;
-                    }
-                }
-            }
-            else if (obj instanceof Image) {
-                Image image = (Image)obj;
-                output.write(String.valueOf(pageIndex));
-                output.write("\t" + String.valueOf(image.x));
-                output.write("\t" + String.valueOf(image.y));
-                output.write("\t" + String.valueOf(image.w));
-                output.write("\t" + String.valueOf(image.h));
-                output.write("\n");
-                i++;
-            }
-            else i++;
-        }
+    // newGlyphs are about to be written
+    void checkBudget(int newGlyphs, boolean checkTime) {
+        budget.check(pageStart, operators, glyphs + newGlyphs, glyphs + newGlyphs + draws + images, values, checkTime);
     }
 
     @Override
     public void drawImage(PDImage pdImage) throws IOException {
-        if (!useImage) return;
-        Image i = imageBuffer.get(0);
-        buffer.add(i);
-        imageBuffer.remove(0);
+        if (!plan.image) return;
+        // the image is drawn into the unit square transformed by the CTM
+        Matrix ctm = getGraphicsState().getCurrentTransformationMatrix();
+        float w = ctm.getScalingFactorX();
+        float h = ctm.getScalingFactorY();
+        float x = ctm.getTranslateX();
+        float y = getPageHeight() - ctm.getTranslateY() - h;
+        if (imageExporter == null) listener.image(x, y, w, h);
+        else {
+            // inline images are not exported
+            String file = pdImage instanceof PDImageXObject ? imageExporter.export((PDImageXObject)pdImage) : null;
+            listener.image(x, y, w, h, file);
+        }
+        images++;
     }
 
     @Override
     public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException {
+        if (!plan.draw) return;
         float h = getPageHeight();
         addDraw("RECTANGLE", (float)p0.getX(), h - (float)p0.getY(), (float)p1.getX(), h - (float)p1.getY(),
                 (float)p2.getX(), h - (float)p2.getY(), (float)p3.getX(), h - (float)p3.getY());
@@ -270,16 +433,19 @@ public class PDFExtractor extends PDFGraphicsStreamEngine {
 
     @Override
     public void moveTo(float x, float y) throws IOException {
+        if (!plan.draw) return;
         addDraw("MOVE_TO", x, getPageHeight() - y);
     }
 
     @Override
     public void lineTo(float x, float y) throws IOException {
+        if (!plan.draw) return;
         addDraw("LINE_TO", x, getPageHeight() - y);
     }
 
     @Override
     public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+        if (!plan.draw) return;
         float h = getPageHeight();
         addDraw("CURVE_TO", x1, h - y1, x2, h - y2, x3, h - y3);
     }
@@ -307,76 +473,14 @@ public class PDFExtractor extends PDFGraphicsStreamEngine {
 
     @Override
     public void showFontGlyph(Matrix textRenderingMatrix, PDFont font, int code, String unicode, Vector displacement) throws IOException {
-        if (!useText) return;
+        if (!plan.text) return;
+        // a single operator can show a whole line of glyphs
+        checkBudget(1, false);
         // taken from LegacyPDFStreamEngine.showGlyph
-        PDGraphicsState state = this.getGraphicsState();
-        Matrix ctm = state.getCurrentTransformationMatrix();
-        float fontSize = state.getTextState().getFontSize();
-        float horizontalScaling = state.getTextState().getHorizontalScaling() / 100.0F;
-        Matrix textMatrix = this.getTextMatrix();
-        BoundingBox bbox = font.getBoundingBox();
-        if (bbox.getLowerLeftY() < -32768.0F) {
-            bbox.setLowerLeftY(-(bbox.getLowerLeftY() + 65536.0F));
-        }
-
-        float glyphHeight = bbox.getHeight() / 2.0F;
-        PDFontDescriptor fontDescriptor = font.getFontDescriptor();
-        float height;
-        if (fontDescriptor != null) {
-            height = fontDescriptor.getCapHeight();
-            if (height != 0.0F && (height < glyphHeight || glyphHeight == 0.0F)) {
-                glyphHeight = height;
-            }
-        }
-
-        height = glyphHeight / 1000.0F;
-
-        float displacementX = displacement.getX();
-        if (font.isVertical()) {
-            displacementX = font.getWidth(code) / 1000.0F;
-            TrueTypeFont ttf = null;
-            if (font instanceof PDTrueTypeFont) {
-                ttf = ((PDTrueTypeFont)font).getTrueTypeFont();
-            } else if (font instanceof PDType0Font) {
-                PDCIDFont cidFont = ((PDType0Font)font).getDescendantFont();
-                if(cidFont instanceof PDCIDFontType2) {
-                    ttf = ((PDCIDFontType2)cidFont).getTrueTypeFont();
-                }
-            }
+        // only the parts that the written columns depend on are kept
+        FontMetrics metrics = metrics(font);
 
-            if (ttf != null && ttf.getUnitsPerEm() != 1000) {
-                displacementX *= 1000.0F / (float)ttf.getUnitsPerEm();
-            }
-        }
-
-        float tx = displacementX * fontSize * horizontalScaling;
-        float ty = displacement.getY() * fontSize;
-        Matrix td = Matrix.getTranslateInstance(tx, ty);
-        Matrix nextTextRenderingMatrix = td.multiply(textMatrix).multiply(ctm);
-        float nextX = nextTextRenderingMatrix.getTranslateX();
-        float nextY = nextTextRenderingMatrix.getTranslateY();
-        float dxDisplay = nextX - textRenderingMatrix.getTranslateX();
-        float dyDisplay = height * textRenderingMatrix.getScalingFactorY();
-        float glyphSpaceToTextSpaceFactor = 0.001F;
-        if (font instanceof PDType3Font) {
-            glyphSpaceToTextSpaceFactor = font.getFontMatrix().getScaleX();
-        }
-
-        float spaceWidthText = 0.0F;
-        try {
-            spaceWidthText = font.getSpaceWidth() * glyphSpaceToTextSpaceFactor;
-        } catch (Throwable e) {
-            //LOG.warn(e, e);
-        }
-
-        if (spaceWidthText == 0.0F) {
-            spaceWidthText = font.getAverageFontWidth() * glyphSpaceToTextSpaceFactor;
-            spaceWidthText *= 0.8F;
-        }
-        if (spaceWidthText == 0.0F) spaceWidthText = 1.0F;
-
-        float spaceWidthDisplay = spaceWidthText * textRenderingMatrix.getScalingFactorX();
-        unicode = font.toUnicode(code, this.glyphList);
+        unicode = font.toUnicode(code, FontMetrics.GLYPH_LIST);
         if (unicode == null) unicode = "[NO_UNICODE]";
 
         Matrix translatedTextRenderingMatrix;
@@ -384,41 +488,51 @@ public class PDFExtractor extends PDFGraphicsStreamEngine {
             translatedTextRenderingMatrix = textRenderingMatrix;
         } else {
             translatedTextRenderingMatrix = Matrix.concatenate(this.translateMatrix, textRenderingMatrix);
-            nextX -= this.pageSize.getLowerLeftX();
-            nextY -= this.pageSize.getLowerLeftY();
         }
 
-        TextPosition text = new TextPosition(pageRotation, pageSize.getWidth(), pageSize.getHeight(), translatedTextRenderingMatrix,
-                nextX, nextY, Math.abs(dyDisplay), dxDisplay, Math.abs(spaceWidthDisplay),
-                unicode, new int[]{code}, font, fontSize, (int)(fontSize * textMatrix.getScalingFactorX()));
-
-        Shape boundingShape = calculateBounds(text);
+        Shape boundingShape = calculateBounds(translatedTextRenderingMatrix, font, code);
         Rectangle2D.Double b = (Rectangle2D.Double)boundingShape.getBounds2D(); // bounding coordinates
-        Shape glyphShape = calculateGlyphBounds(textRenderingMatrix, font, code);
-        Rectangle2D.Double g = (Rectangle2D.Double)glyphShape.getBounds2D(); // glyph coordinates
-        Text t = new Text(unicode, font, (float)b.x, (float)b.y, (float)b.width, (float)b.height,
-                (float)g.x, (float)g.y, (float)g.width, (float)g.height);
-        buffer.add(t);
+        if (plan.glyphBounds) {
+            Shape glyphShape = calculateGlyphBounds(textRenderingMatrix, font, code);
+            Rectangle2D.Double g = (Rectangle2D.Double)glyphShape.getBounds2D(); // glyph coordinates
+            listener.glyph(unicode, metrics.name, (float)b.x, (float)b.y, (float)b.width, (float)b.height,
+                    (float)g.x, (float)g.y, (float)g.width, (float)g.height);
+        }
+        else {
+            listener.glyph(unicode, metrics.name, (float)b.x, (float)b.y, (float)b.width, (float)b.height, 0, 0, 0, 0);
+        }
+        glyphs++;
+    }
+
+    FontMetrics metrics(PDFont font) throws IOException {
+        if (font != lastFont) {
+            FontMetrics metrics = fontMetrics.get(font.getCOSObject());
+            if (metrics == null) {
+                metrics = new FontMetrics(font);
+                fontMetrics.put(font.getCOSObject(), metrics);
+            }
+            lastFont = font;
+            lastMetrics = metrics;
+        }
+        return lastMetrics;
     }
 
     // taken from writeString in DrawPrintTextLocations
-    Shape calculateBounds(TextPosition text) throws IOException {
+    Shape calculateBounds(Matrix textRenderingMatrix, PDFont font, int code) throws IOException {
         // glyph space -> user space
-        // note: text.getTextMatrix() is *not* the Text Matrix, it's the Text Rendering Matrix
-        AffineTransform at = text.getTextMatrix().createAffineTransform();
+        AffineTransform at = textRenderingMatrix.createAffineTransform();
 
         // show rectangle with the real vertical bounds, based on the font bounding box y values
         // usually, the height is identical to what you see when marking text in Adobe Reader
-        PDFont font = text.getFont();
-        BoundingBox bbox = font.getBoundingBox();
+        FontMetrics metrics = metrics(font);
 
         // advance width, bbox height (glyph space)
-        float xadvance = font.getWidth(text.getCharacterCodes()[0]); // todo: should iterate all chars
-        Rectangle2D.Float rect = new Rectangle2D.Float(0, bbox.getLowerLeftY(), xadvance, bbox.getHeight());
+        float xadvance = font.getWidth(code);
+        Rectangle2D.Float rect = new Rectangle2D.Float(0, metrics.bboxLowerLeftY, xadvance, metrics.bboxHeight);
 
-        if (font instanceof PDType3Font) {
+        if (metrics.type3) {
             // bbox and font matrix are unscaled
-            at.concatenate(font.getFontMatrix().createAffineTransform());
+            at.concatenate(metrics.fontMatrix);
         }
         else {
             // bbox and font matrix are already scaled to 1000
@@ -433,9 +547,30 @@ public class PDFExtractor extends PDFGraphicsStreamEngine {
     // taken from DrawPrintTextLocations.java
     // this calculates the real (except for type 3 fonts) individual glyph bounds
     Shape calculateGlyphBounds(Matrix textRenderingMatrix, PDFont font, int code) throws IOException {
-        GeneralPath path = null;
+        FontMetrics metrics = metrics(font);
         AffineTransform at = textRenderingMatrix.createAffineTransform();
-        at.concatenate(font.getFontMatrix().createAffineTransform());
+        at.concatenate(metrics.fontMatrix);
+        double scale = metrics.glyphScale(font);
+        if (scale != 1) at.scale(scale, scale);
+
+        // the outline only depends on font and code, so its bounds are taken from the cache
+        Rectangle2D bounds = glyphBounds.get(font, code);
+        if (bounds == null) {
+            GeneralPath path = getGlyphPath(font, code);
+            bounds = path == null ? GlyphBoundsCache.NO_PATH : path.getBounds2D();
+            glyphBounds.put(font, code, bounds);
+        }
+        if (bounds == GlyphBoundsCache.NO_PATH) return null;
+        Shape s = at.createTransformedShape(bounds);
+        s = flipAT.createTransformedShape(s);
+        s = rotateAT.createTransformedShape(s);
+        s = transAT.createTransformedShape(s);
+        return s;
+    }
+
+    // glyph outline in glyph space, or null
+    GeneralPath getGlyphPath(PDFont font, int code) throws IOException {
+        GeneralPath path = null;
         if (font instanceof PDType3Font) {
             // It is difficult to calculate the real individual glyph bounds for type 3 fonts
             // because these are not vector fonts, the content stream could contain almost anything
@@ -458,19 +593,6 @@ public class PDFExtractor extends PDFGraphicsStreamEngine {
         else if (font instanceof PDVectorFont) {
             PDVectorFont vectorFont = (PDVectorFont) font;
             path = vectorFont.getPath(code);
-
-            if (font instanceof PDTrueTypeFont) {
-                PDTrueTypeFont ttFont = (PDTrueTypeFont) font;
-                int unitsPerEm = ttFont.getTrueTypeFont().getHeader().getUnitsPerEm();
-                at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
-            }
-            if (font instanceof PDType0Font) {
-                PDType0Font t0font = (PDType0Font) font;
-                if (t0font.getDescendantFont() instanceof PDCIDFontType2) {
-                    int unitsPerEm = ((PDCIDFontType2) t0font.getDescendantFont()).getTrueTypeFont().getHeader().getUnitsPerEm();
-                    at.scale(1000d / unitsPerEm, 1000d / unitsPerEm);
-                }
-            }
         }
         else if (font instanceof PDSimpleFont) {
             PDSimpleFont simpleFont = (PDSimpleFont) font;
@@ -482,54 +604,8 @@ public class PDFExtractor extends PDFGraphicsStreamEngine {
         }
         else {
             // shouldn't happen, please open issue in JIRA
-            System.out.println("Unknown font class: " + font.getClass());
-        }
-        if (path == null) return null;
-        Shape s = at.createTransformedShape(path.getBounds2D());
-        s = flipAT.createTransformedShape(s);
-        s = rotateAT.createTransformedShape(s);
-        s = transAT.createTransformedShape(s);
-        return s;
-    }
-
-    public class ImageExtractor extends PDFStreamEngine {
-
-        List<Image> buffer = new ArrayList<>();
-
-        public ImageExtractor() throws IOException {
-            addOperator(new Concatenate());
-            addOperator(new DrawObject());
-            addOperator(new SetGraphicsStateParameters());
-            addOperator(new Save());
-            addOperator(new Restore());
-            addOperator(new SetMatrix());
-        }
-
-        @Override
-        protected void processOperator(Operator operator, List<COSBase> operands) throws IOException {
-            String operation = operator.getName();
-            if("Do".equals(operation)) {
-                COSName objectName = (COSName)operands.get(0);
-                PDXObject xobject = getResources().getXObject(objectName);
-
-                if (xobject instanceof PDImageXObject) {
-                    PDImageXObject image = (PDImageXObject)xobject;
-                    Matrix ctmNew = getGraphicsState().getCurrentTransformationMatrix();
-                    PDRectangle pageRect = this.getCurrentPage().getCropBox();
-                    float w = ctmNew.getScalingFactorX();
-                    float h = ctmNew.getScalingFactorY();
-                    float x = ctmNew.getTranslateX();
-                    float y = pageRect.getHeight() - ctmNew.getTranslateY() - h;
-                    buffer.add(new Image(x, y, w, h));
-                }
-                else if(xobject instanceof PDFormXObject) {
-                    PDFormXObject form = (PDFormXObject)xobject;
-                    showForm(form);
-                }
-            }
-            else {
-                super.processOperator(operator, operands);
-            }
+            System.err.println("Unknown font class: " + font.getClass());
         }
+        return path;
     }
 }
@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// items of a page stored column by column in primitive arrays.
+// characters, font names and operations are interned, so a text is two ids and eight floats.
+// one buffer is reused for all pages of a document; clear() keeps the arrays and the string table.
+// as a listener it collects a page without writing it, PageWriterListener writes it.
+public class PageBuffer implements ExtractionListener {
+
+    static final byte TEXT = 0;
+    static final byte DRAW = 1;
+    static final byte IMAGE = 2;
+
+    static final int TEXT_STRIDE = 8; // bx, by, bw, bh, gx, gy, gw, gh
+    static final int IMAGE_STRIDE = 4; // x, y, w, h
+
+    int pageIndex;
+
+    // kind of every item in content stream order
+    int size = 0;
+    byte[] kinds = new byte[1024];
+
+    int textCount = 0;
+    int[] unicode = new int[1024];
+    int[] font = new int[1024];
+    float[] textBoxes = new float[1024 * TEXT_STRIDE];
+
+    // values of draw i are values[drawStart(i)] .. values[drawEnd[i] - 1]
+    int drawCount = 0;
+    int[] op = new int[256];
+    int[] drawEnd = new int[256];
+    int valueCount = 0;
+    float[] values = new float[1024];
+
+    int imageCount = 0;
+    float[] images = new float[16 * IMAGE_STRIDE];
+    int[] imageFile = new int[16]; // -imageDir, -1 if not exported
+
+    final List<String> strings = new ArrayList<>();
+    final Map<String, Integer> ids = new HashMap<>();
+    String lastFontName;
+    int lastFontId = -1;
+
+    void clear() {
+        size = textCount = drawCount = valueCount = imageCount = 0;
+    }
+
+    @Override
+    public void startPage(int pageIndex) {
+        clear();
+        this.pageIndex = pageIndex;
+    }
+
+    @Override
+    public void glyph(String unicode, String fontName, float bx, float by, float bw, float bh,
+                      float gx, float gy, float gw, float gh) {
+        addText(unicode, fontName, bx, by, bw, bh, gx, gy, gw, gh);
+    }
+
+    @Override
+    public void path(String op, float[] values, int length) {
+        addDraw(intern(op), values, 0, length);
+    }
+
+    @Override
+    public void image(float x, float y, float w, float h) {
+        addImage(x, y, w, h, -1);
+    }
+
+    @Override
+    public void image(float x, float y, float w, float h, String file) {
+        addImage(x, y, w, h, file == null ? -1 : intern(file));
+    }
+
+    @Override
+    public void endPage(int pageIndex) { }
+
+    int intern(String s) {
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = strings.size();
+            ids.put(s, id);
+            strings.add(s);
+        }
+        return id;
+    }
+
+    // -1 stands for a missing string, e.g. a font without name
+    String string(int id) { return id < 0 ? null : strings.get(id); }
+
+    void addKind(byte kind) {
+        if (size == kinds.length) kinds = Arrays.copyOf(kinds, size * 2);
+        kinds[size++] = kind;
+    }
+
+    void addText(String unicode, String fontName, float bx, float by, float bw, float bh, float gx, float gy, float gw, float gh) {
+        // consecutive glyphs mostly share the font
+        if (fontName != lastFontName) {
+            lastFontName = fontName;
+            lastFontId = fontName == null ? -1 : intern(fontName);
+        }
+        addText(intern(unicode), lastFontId, bx, by, bw, bh, gx, gy, gw, gh);
+    }
+
+    void addText(int unicodeId, int fontId, float bx, float by, float bw, float bh, float gx, float gy, float gw, float gh) {
+        ensureTexts(textCount + 1);
+        unicode[textCount] = unicodeId;
+        font[textCount] = fontId;
+        int o = textCount * TEXT_STRIDE;
+        textBoxes[o] = bx;
+        textBoxes[o + 1] = by;
+        textBoxes[o + 2] = bw;
+        textBoxes[o + 3] = bh;
+        textBoxes[o + 4] = gx;
+        textBoxes[o + 5] = gy;
+        textBoxes[o + 6] = gw;
+        textBoxes[o + 7] = gh;
+        textCount++;
+        addKind(TEXT);
+    }
+
+    void addDraw(int opId, float[] v, int from, int length) {
+        ensureDraws(drawCount + 1);
+        ensureValues(valueCount + length);
+        System.arraycopy(v, from, values, valueCount, length);
+        valueCount += length;
+        op[drawCount] = opId;
+        drawEnd[drawCount] = valueCount;
+        drawCount++;
+        addKind(DRAW);
+    }
+
+    void addImage(float x, float y, float w, float h, int fileId) {
+        ensureImages(imageCount + 1);
+        imageFile[imageCount] = fileId;
+        int o = imageCount * IMAGE_STRIDE;
+        images[o] = x;
+        images[o + 1] = y;
+        images[o + 2] = w;
+        images[o + 3] = h;
+        imageCount++;
+        addKind(IMAGE);
+    }
+
+    int drawStart(int i) { return i == 0 ? 0 : drawEnd[i - 1]; }
+
+    float textBox(int i, int field) { return textBoxes[i * TEXT_STRIDE + field]; }
+
+    float image(int i, int field) { return images[i * IMAGE_STRIDE + field]; }
+
+    void ensureTexts(int n) {
+        if (n <= unicode.length) return;
+        int capacity = Math.max(n, unicode.length * 2);
+        unicode = Arrays.copyOf(unicode, capacity);
+        font = Arrays.copyOf(font, capacity);
+        textBoxes = Arrays.copyOf(textBoxes, capacity * TEXT_STRIDE);
+    }
+
+    void ensureDraws(int n) {
+        if (n <= op.length) return;
+        int capacity = Math.max(n, op.length * 2);
+        op = Arrays.copyOf(op, capacity);
+        drawEnd = Arrays.copyOf(drawEnd, capacity);
+    }
+
+    void ensureImages(int n) {
+        if (n <= imageFile.length) return;
+        int capacity = Math.max(n, imageFile.length * 2);
+        images = Arrays.copyOf(images, capacity * IMAGE_STRIDE);
+        imageFile = Arrays.copyOf(imageFile, capacity);
+    }
+
+    void ensureValues(int n) {
+        if (n > values.length) values = Arrays.copyOf(values, Math.max(n, values.length * 2));
+    }
+}
@@ -0,0 +1,245 @@
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// uniform grid over the items of one page for region and nearest neighbour queries.
+// items are numbered in content stream order like the items of PageBuffer, and their boxes are
+// in the coordinates of the output (y grows downwards), which RegionPDFRenderer.renderRect accepts as they are.
+// a draw is boxed by its points and, for LINE_TO and CURVE_TO, the current point the segment starts at,
+// so a rule crossing a rectangle is found although both its ends are outside.
+// operations without points (e.g. STROKE_PATH) are not indexed.
+public class PageIndex {
+
+    static final int KIND_TEXT = 1 << PageBuffer.TEXT;
+    static final int KIND_DRAW = 1 << PageBuffer.DRAW;
+    static final int KIND_IMAGE = 1 << PageBuffer.IMAGE;
+    static final int KIND_ALL = KIND_TEXT | KIND_DRAW | KIND_IMAGE;
+
+    final int pageIndex;
+    final int size;
+    final byte[] kinds;
+    final String[] strings; // character of a text, operation of a draw
+    final float[] boxes; // x, y, w, h of every item; NaN for items that are not indexed
+
+    // grid of cellsX * cellsY cells starting at minX, minY
+    float minX, minY, cellW, cellH;
+    int cellsX, cellsY;
+    int[] cellStart; // items of cell c are cellItems[cellStart[c]] .. cellItems[cellStart[c + 1] - 1]
+    int[] cellItems;
+    final int[] seen; // query stamp of every item, so items in several cells are reported once
+    int stamp = 0;
+
+    // glyphBoxes indexes texts by their glyph coordinates, which are only there with -glyph
+    public PageIndex(PageBuffer page, boolean glyphBoxes) {
+        this.pageIndex = page.pageIndex;
+        this.size = page.size;
+        this.kinds = Arrays.copyOf(page.kinds, size);
+        this.strings = new String[size];
+        this.boxes = new float[size * 4];
+        this.seen = new int[size];
+
+        int t = 0, d = 0, im = 0;
+        int field = glyphBoxes ? 4 : 0;
+        boolean hasPoint = false; // of the path being built
+        float pointX = 0, pointY = 0;
+        for (int i = 0; i < size; i++) {
+            int o = i * 4;
+            if (kinds[i] == PageBuffer.TEXT) {
+                strings[i] = page.string(page.unicode[t]);
+                for (int f = 0; f < 4; f++) boxes[o + f] = page.textBox(t, field + f);
+                t++;
+            }
+            else if (kinds[i] == PageBuffer.DRAW) {
+                strings[i] = page.string(page.op[d]);
+                int from = page.drawStart(d), to = page.drawEnd[d];
+                if (from == to) {
+                    Arrays.fill(boxes, o, o + 4, Float.NaN);
+                    hasPoint = false; // painting ends the path
+                }
+                else {
+                    float x0 = Float.MAX_VALUE, y0 = Float.MAX_VALUE, x1 = -Float.MAX_VALUE, y1 = -Float.MAX_VALUE;
+                    boolean segment = strings[i].equals("LINE_TO") || strings[i].equals("CURVE_TO");
+                    if (segment && hasPoint) {
+                        x0 = x1 = pointX;
+                        y0 = y1 = pointY;
+                    }
+                    for (int v = from; v + 1 < to; v += 2) {
+                        x0 = Math.min(x0, page.values[v]);
+                        x1 = Math.max(x1, page.values[v]);
+                        y0 = Math.min(y0, page.values[v + 1]);
+                        y1 = Math.max(y1, page.values[v + 1]);
+                    }
+                    boxes[o] = x0;
+                    boxes[o + 1] = y0;
+                    boxes[o + 2] = x1 - x0;
+                    boxes[o + 3] = y1 - y0;
+                    // a rectangle starts a subpath at its first point
+                    int last = strings[i].equals("RECTANGLE") ? from : to - 2;
+                    hasPoint = last >= from;
+                    if (hasPoint) {
+                        pointX = page.values[last];
+                        pointY = page.values[last + 1];
+                    }
+                }
+                d++;
+            }
+            else {
+                for (int f = 0; f < 4; f++) boxes[o + f] = page.image(im, f);
+                im++;
+            }
+        }
+        buildGrid();
+    }
+
+    // extracts a document and indexes every page
+    public static List<PageIndex> of(Path path, ExtractionPlan plan) throws IOException {
+        List<PageIndex> pages = new ArrayList<>();
+        PageWriter collector = new PageWriter() {
+            @Override
+            public void begin() { }
+
+            @Override
+            public void writePage(PageBuffer page) { pages.add(new PageIndex(page, plan.glyph)); }
+
+            @Override
+            public void end() { }
+
+            @Override
+            public void flush() { }
+        };
+        PDFExtractor.processPages(new DocumentSource(path), collector, plan, null);
+        return pages;
+    }
+
+    boolean indexed(int item) { return !Float.isNaN(boxes[item * 4]); }
+
+    void buildGrid() {
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        minX = minY = Float.MAX_VALUE;
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (!indexed(i)) continue;
+            int o = i * 4;
+            minX = Math.min(minX, boxes[o]);
+            minY = Math.min(minY, boxes[o + 1]);
+            maxX = Math.max(maxX, boxes[o] + boxes[o + 2]);
+            maxY = Math.max(maxY, boxes[o + 1] + boxes[o + 3]);
+            n++;
+        }
+        if (n == 0) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+        // about one item per cell
+        int cells = Math.max(1, (int)Math.sqrt(n));
+        cellsX = cellsY = cells;
+        cellW = Math.max((maxX - minX) / cells, 1e-3f);
+        cellH = Math.max((maxY - minY) / cells, 1e-3f);
+
+        // counting pass, then filling pass
+        cellStart = new int[cellsX * cellsY + 1];
+        for (int i = 0; i < size; i++) {
+            if (!indexed(i)) continue;
+            int o = i * 4;
+            for (int cy = cellY(boxes[o + 1]); cy <= cellY(boxes[o + 1] + boxes[o + 3]); cy++) {
+                for (int cx = cellX(boxes[o]); cx <= cellX(boxes[o] + boxes[o + 2]); cx++) cellStart[cy * cellsX + cx + 1]++;
+            }
+        }
+        for (int c = 0; c < cellsX * cellsY; c++) cellStart[c + 1] += cellStart[c];
+        cellItems = new int[cellStart[cellsX * cellsY]];
+        int[] fill = Arrays.copyOf(cellStart, cellsX * cellsY);
+        for (int i = 0; i < size; i++) {
+            if (!indexed(i)) continue;
+            int o = i * 4;
+            for (int cy = cellY(boxes[o + 1]); cy <= cellY(boxes[o + 1] + boxes[o + 3]); cy++) {
+                for (int cx = cellX(boxes[o]); cx <= cellX(boxes[o] + boxes[o + 2]); cx++) cellItems[fill[cy * cellsX + cx]++] = i;
+            }
+        }
+    }
+
+    int cellX(float x) { return Math.min(cellsX - 1, Math.max(0, (int)((x - minX) / cellW))); }
+
+    int cellY(float y) { return Math.min(cellsY - 1, Math.max(0, (int)((y - minY) / cellH))); }
+
+    // items of the given kinds (KIND_* bits) whose box intersects the rectangle, in content stream order.
+    // not thread-safe, every thread needs its own index.
+    public int[] intersecting(Rectangle2D rect, int kindMask) {
+        float x0 = (float)rect.getMinX(), y0 = (float)rect.getMinY(), x1 = (float)rect.getMaxX(), y1 = (float)rect.getMaxY();
+        int[] result = new int[16];
+        int n = 0;
+        stamp++;
+        for (int cy = cellY(y0); cy <= cellY(y1); cy++) {
+            for (int cx = cellX(x0); cx <= cellX(x1); cx++) {
+                int c = cy * cellsX + cx;
+                for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                    int i = cellItems[k];
+                    if (seen[i] == stamp) continue;
+                    seen[i] = stamp;
+                    if ((kindMask & 1 << kinds[i]) == 0) continue;
+                    int o = i * 4;
+                    if (boxes[o] > x1 || boxes[o] + boxes[o + 2] < x0 || boxes[o + 1] > y1 || boxes[o + 1] + boxes[o + 3] < y0) continue;
+                    if (n == result.length) result = Arrays.copyOf(result, n * 2);
+                    result[n++] = i;
+                }
+            }
+        }
+        result = Arrays.copyOf(result, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    // the item of the given kinds whose box is closest to the point, or -1 if there is none
+    public int nearest(float x, float y, int kindMask) {
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        int cx = Math.min(cellsX - 1, Math.max(0, (int)Math.floor((x - minX) / cellW)));
+        int cy = Math.min(cellsY - 1, Math.max(0, (int)Math.floor((y - minY) / cellH)));
+        stamp++;
+        // rings of cells around the cell of the point; items in ring r are at least (r - 1) cells away
+        for (int r = 0; r < Math.max(cellsX, cellsY) + 1; r++) {
+            double ringDistance = (r - 1) * Math.min(cellW, cellH);
+            if (best >= 0 && ringDistance > bestDistance) break;
+            for (int ry = cy - r; ry <= cy + r; ry++) {
+                if (ry < 0 || ry >= cellsY) continue;
+                for (int rx = cx - r; rx <= cx + r; rx++) {
+                    if (rx < 0 || rx >= cellsX) continue;
+                    if (Math.abs(ry - cy) != r && Math.abs(rx - cx) != r) continue; // inner cells are done
+                    int c = ry * cellsX + rx;
+                    for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                        int i = cellItems[k];
+                        if (seen[i] == stamp) continue;
+                        seen[i] = stamp;
+                        if ((kindMask & 1 << kinds[i]) == 0) continue;
+                        double distance = distance(i, x, y);
+                        if (distance < bestDistance) {
+                            bestDistance = distance;
+                            best = i;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // 0 inside the box
+    double distance(int item, float x, float y) {
+        int o = item * 4;
+        double dx = Math.max(0, Math.max(boxes[o] - x, x - (boxes[o] + boxes[o + 2])));
+        double dy = Math.max(0, Math.max(boxes[o + 1] - y, y - (boxes[o + 1] + boxes[o + 3])));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public byte kind(int item) { return kinds[item]; }
+
+    // character of a text, operation of a draw, null for an image
+    public String string(int item) { return strings[item]; }
+
+    public Rectangle2D bounds(int item) {
+        int o = item * 4;
+        return new Rectangle2D.Float(boxes[o], boxes[o + 1], boxes[o + 2], boxes[o + 3]);
+    }
+}
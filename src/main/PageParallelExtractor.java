@@ -0,0 +1,107 @@
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// processes the pages of one document on several threads.
+// PDDocument is not thread-safe, so every worker loads its own handle and claims the next page index.
+// pages are written in page order, so the output is the same as the sequential processFile.
+public class PageParallelExtractor {
+
+    final DocumentSource source;
+    final ExtractionPlan plan;
+    final int threads;
+    final FileStats fileStats; // null without -stats
+    final AtomicInteger nextPage = new AtomicInteger();
+    final Budget budget;
+    // the page at which a limit of the document was hit, the pages after it are not written
+    final AtomicInteger lastPage = new AtomicInteger(Integer.MAX_VALUE);
+    final Semaphore window; // bounds pages that are extracted but not written yet
+    CompletableFuture<byte[]>[] pages;
+    int[] pageIndices; // selected pages of the document, pages[i] is page pageIndices[i]
+
+    public PageParallelExtractor(DocumentSource source, ExtractionPlan plan, int threads, FileStats fileStats) {
+        this.source = source;
+        this.plan = plan;
+        this.threads = threads;
+        this.fileStats = fileStats;
+        this.window = new Semaphore(threads * 4);
+        this.budget = new Budget(plan.limits);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void process(OutputStream out) throws IOException {
+        PDDocument first = PDFExtractor.load(source, fileStats);
+        pageIndices = plan.pages.select(first.getNumberOfPages());
+        int numPages = pageIndices.length;
+        pages = new CompletableFuture[numPages];
+        for (int i = 0; i < numPages; i++) pages[i] = new CompletableFuture<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            executor.execute(() -> work(first));
+            for (int i = 1; i < threads; i++) {
+                executor.execute(() -> {
+                    try {
+                        work(PDFExtractor.load(source, fileStats));
+                    }
+                    catch (Throwable e) {
+                        abort(e);
+                    }
+                });
+            }
+            // lastPage is set before its page completes, so it is known when the page after it is due
+            for (int i = 0; i < numPages && i <= lastPage.get(); i++) {
+                out.write(pages[i].join());
+                window.release();
+            }
+            PDFExtractor.reportTruncation(source.path, budget, fileStats);
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+            throw new IOException(e.getCause());
+        }
+        finally {
+            abort(new CancellationException());
+            window.release(threads);
+            executor.shutdown();
+        }
+    }
+
+    void work(PDDocument doc) {
+        // the glyph cache is bound to fonts of this handle
+        DocumentContext context = new DocumentContext(plan, budget);
+        try (PDDocument d = doc) {
+            context.open(d);
+            while (true) {
+                window.acquire();
+                int i = nextPage.getAndIncrement();
+                if (i >= pages.length || i > lastPage.get() || pages[i].isDone()) break;
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                PageWriter w = PageWriter.create(out, plan);
+                try {
+                    PDFExtractor.extractPage(d, pageIndices[i], new PageWriterListener(w, context.buffer), context, fileStats);
+                }
+                catch (BudgetExceededException e) {
+                    lastPage.accumulateAndGet(i, Math::min);
+                }
+                w.flush();
+                PDFExtractor.endPage(d);
+                pages[i].complete(out.toByteArray());
+            }
+        }
+        catch (Throwable e) {
+            abort(e);
+        }
+        finally {
+            context.close();
+            if (PDFExtractor.cacheStats) System.err.println(source + "\t" + context.glyphBounds);
+        }
+    }
+
+    // fails every page that is not finished yet; the writer stops at the first of them
+    void abort(Throwable e) {
+        for (CompletableFuture<byte[]> page : pages) page.completeExceptionally(e);
+    }
+}
@@ -0,0 +1,90 @@
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// resource cache for -lowMemory.
+// the DefaultResourceCache of PDFBox keeps every resource of the document behind soft references,
+// so the heap fills up with resources of pages that are already written.
+// here resources only live until the end of their page, except for a few recently used fonts,
+// which are expensive to parse again and are usually shared by all pages.
+public class PageResourceCache implements ResourceCache {
+
+    final Map<COSObject, PDFont> fonts;
+    final Map<COSObject, PDColorSpace> colorSpaces = new HashMap<>();
+    final Map<COSObject, PDExtendedGraphicsState> extGStates = new HashMap<>();
+    final Map<COSObject, PDShading> shadings = new HashMap<>();
+    final Map<COSObject, PDAbstractPattern> patterns = new HashMap<>();
+    final Map<COSObject, PDPropertyList> properties = new HashMap<>();
+    final Map<COSObject, PDXObject> xobjects = new HashMap<>();
+
+    public PageResourceCache(int maxFonts) {
+        this.fonts = new LinkedHashMap<COSObject, PDFont>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<COSObject, PDFont> eldest) {
+                return size() > maxFonts;
+            }
+        };
+    }
+
+    // called after the output of a page is written
+    void endPage() {
+        colorSpaces.clear();
+        extGStates.clear();
+        shadings.clear();
+        patterns.clear();
+        properties.clear();
+        xobjects.clear();
+    }
+
+    @Override
+    public PDFont getFont(COSObject indirect) { return fonts.get(indirect); }
+
+    @Override
+    public PDColorSpace getColorSpace(COSObject indirect) { return colorSpaces.get(indirect); }
+
+    @Override
+    public PDExtendedGraphicsState getExtGState(COSObject indirect) { return extGStates.get(indirect); }
+
+    @Override
+    public PDShading getShading(COSObject indirect) { return shadings.get(indirect); }
+
+    @Override
+    public PDAbstractPattern getPattern(COSObject indirect) { return patterns.get(indirect); }
+
+    @Override
+    public PDPropertyList getProperties(COSObject indirect) { return properties.get(indirect); }
+
+    @Override
+    public PDXObject getXObject(COSObject indirect) { return xobjects.get(indirect); }
+
+    @Override
+    public void put(COSObject indirect, PDFont font) { fonts.put(indirect, font); }
+
+    @Override
+    public void put(COSObject indirect, PDColorSpace colorSpace) { colorSpaces.put(indirect, colorSpace); }
+
+    @Override
+    public void put(COSObject indirect, PDExtendedGraphicsState extGState) { extGStates.put(indirect, extGState); }
+
+    @Override
+    public void put(COSObject indirect, PDShading shading) { shadings.put(indirect, shading); }
+
+    @Override
+    public void put(COSObject indirect, PDAbstractPattern pattern) { patterns.put(indirect, pattern); }
+
+    @Override
+    public void put(COSObject indirect, PDPropertyList propertyList) { properties.put(indirect, propertyList); }
+
+    @Override
+    public void put(COSObject indirect, PDXObject xobject) { xobjects.put(indirect, xobject); }
+}
@@ -0,0 +1,89 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// pages selected with -pages, a comma separated list of
+//   N       page N
+//   A-B     pages A to B
+//   A-      page A to the last page
+//   first:N the first N pages
+//   last:N  the last N pages
+// page numbers start at 1. pages beyond the end of a document are ignored.
+public class PageSet {
+
+    static final PageSet ALL = new PageSet(new ArrayList<>());
+
+    // inclusive ranges; negative bounds count from the end, -1 being the last page
+    final List<int[]> ranges;
+
+    PageSet(List<int[]> ranges) {
+        this.ranges = ranges;
+    }
+
+    public static PageSet parse(String spec) {
+        List<int[]> ranges = new ArrayList<>();
+        for (String item : spec.split(",")) {
+            item = item.trim();
+            try {
+                if (item.startsWith("first:")) ranges.add(new int[] { 1, count(item, 6) });
+                else if (item.startsWith("last:")) ranges.add(new int[] { -count(item, 5), -1 });
+                else if (item.endsWith("-")) ranges.add(new int[] { Integer.parseInt(item.substring(0, item.length() - 1)), -1 });
+                else if (item.contains("-")) {
+                    int dash = item.indexOf('-');
+                    ranges.add(new int[] { Integer.parseInt(item.substring(0, dash)), Integer.parseInt(item.substring(dash + 1)) });
+                }
+                else {
+                    int page = Integer.parseInt(item);
+                    ranges.add(new int[] { page, page });
+                }
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid page range: " + item);
+            }
+        }
+        return new PageSet(ranges);
+    }
+
+    // the N of first:N and last:N, at least 1
+    static int count(String item, int start) {
+        int n = Integer.parseInt(item.substring(start));
+        if (n < 1) throw new IllegalArgumentException("invalid page range: " + item + " (count must be at least 1)");
+        return n;
+    }
+
+    public static PageSet of(int... pages) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int page : pages) ranges.add(new int[] { page, page });
+        return new PageSet(ranges);
+    }
+
+    boolean isAll() { return ranges.isEmpty(); }
+
+    // 0-based indices of the selected pages in page order
+    int[] select(int numberOfPages) {
+        BitSet selected = new BitSet(numberOfPages);
+        if (isAll()) selected.set(0, numberOfPages);
+        for (int[] range : ranges) {
+            int from = Math.max(resolve(range[0], numberOfPages), 1);
+            int to = Math.min(resolve(range[1], numberOfPages), numberOfPages);
+            if (from <= to) selected.set(from - 1, to);
+        }
+        return selected.stream().toArray();
+    }
+
+    // canonical form of the ranges, "all" for ALL
+    @Override
+    public String toString() {
+        if (isAll()) return "all";
+        StringBuilder s = new StringBuilder();
+        for (int[] range : ranges) {
+            if (s.length() > 0) s.append(',');
+            s.append(range[0]).append(':').append(range[1]);
+        }
+        return s.toString();
+    }
+
+    static int resolve(int page, int numberOfPages) {
+        return page < 0 ? numberOfPages + page + 1 : page;
+    }
+}
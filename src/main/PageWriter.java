@@ -0,0 +1,21 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// serializes the items that PDFExtractor collected for a page
+public interface PageWriter {
+
+    // document header, written once before the first page
+    void begin() throws IOException;
+
+    void writePage(PageBuffer page) throws IOException;
+
+    // document trailer, only written when every page was processed and no limit truncated the document
+    void end() throws IOException;
+
+    void flush() throws IOException;
+
+    static PageWriter create(OutputStream out, ExtractionPlan plan) {
+        if (plan.binary) return new BinaryWriter(out, plan);
+        return new TsvWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), plan);
+    }
+}
@@ -0,0 +1,46 @@
+import java.io.IOException;
+
+// collects the items of a page in a PageBuffer and writes the page with a PageWriter when it ends,
+// because the TSV output groups lines and words over the whole page
+public class PageWriterListener implements ExtractionListener {
+
+    final PageWriter output;
+    final PageBuffer buffer;
+
+    public PageWriterListener(PageWriter output, PageBuffer buffer) {
+        this.output = output;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void startPage(int pageIndex) {
+        buffer.startPage(pageIndex);
+    }
+
+    @Override
+    public void glyph(String unicode, String fontName, float bx, float by, float bw, float bh,
+                      float gx, float gy, float gw, float gh) {
+        buffer.addText(unicode, fontName, bx, by, bw, bh, gx, gy, gw, gh);
+    }
+
+    @Override
+    public void path(String op, float[] values, int length) {
+        buffer.path(op, values, length);
+    }
+
+    @Override
+    public void image(float x, float y, float w, float h) {
+        buffer.addImage(x, y, w, h, -1);
+    }
+
+    @Override
+    public void image(float x, float y, float w, float h, String file) {
+        buffer.image(x, y, w, h, file);
+    }
+
+    @Override
+    public void endPage(int pageIndex) throws IOException {
+        output.writePage(buffer);
+        if (PDFExtractor.lowMemory) output.flush();
+    }
+}
@@ -11,6 +11,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 
 public class RegionPDFRenderer {
 
@@ -31,32 +35,93 @@ public class RegionPDFRenderer {
     }
 
     private static final int POINTS_IN_INCH = 72;
+    static final int CACHED_RASTERS = 2; // a Letter page at 500 DPI is 90MB
 
     private final PDFRenderer renderer;
     private final int resolutionDotPerInch;
+    private final RasterCache rasters;
 
     public RegionPDFRenderer(PDDocument doc, int resolutionDotPerInch) {
+        this(doc, resolutionDotPerInch, new RasterCache(CACHED_RASTERS));
+    }
+
+    // renderers of the same document can share a cache, rasters are kept apart by resolution
+    public RegionPDFRenderer(PDDocument doc, int resolutionDotPerInch, RasterCache rasters) {
         this.renderer = new PDFRenderer(doc);
         this.resolutionDotPerInch = resolutionDotPerInch;
+        this.rasters = rasters;
     }
 
     RenderedImage renderRect(int pageIndex, Rectangle2D rect) throws IOException {
         BufferedImage image = createImage(rect);
+        renderRect(pageIndex, rect, image);
+        return image;
+    }
+
+    // renders into an image of imageSize(rect), e.g. one that is reused
+    void renderRect(int pageIndex, Rectangle2D rect, BufferedImage image) throws IOException {
         Graphics2D graphics = createGraphics(image, rect);
         renderer.renderPageToGraphics(pageIndex, graphics);
         graphics.dispose();
-        return image;
+    }
+
+    // renders many regions of a page. the union of the regions is rasterized once, so the page is interpreted once,
+    // and the regions are cropped from it; the raster is cached, so later calls inside it interpret nothing.
+    // a region starts at the pixel containing its corner, while renderRect starts exactly at the corner.
+    public List<BufferedImage> renderRects(int pageIndex, List<? extends Rectangle2D> rects) throws IOException {
+        double scale = (double)resolutionDotPerInch / POINTS_IN_INCH;
+        List<BufferedImage> images = new ArrayList<>(rects.size());
+        Rectangle union = null; // pixels
+        for (Rectangle2D rect : rects) {
+            BufferedImage image = createImage(rect);
+            images.add(image);
+            Rectangle r = new Rectangle((int)Math.floor(rect.getX() * scale), (int)Math.floor(rect.getY() * scale),
+                    image.getWidth(), image.getHeight());
+            union = union == null ? r : union.union(r);
+        }
+        if (union == null || union.isEmpty()) return images;
+
+        Raster raster = raster(pageIndex, union);
+        for (int i = 0; i < rects.size(); i++) {
+            Rectangle2D rect = rects.get(i);
+            Graphics2D graphics = images.get(i).createGraphics();
+            graphics.drawImage(raster.image, raster.bounds.x - (int)Math.floor(rect.getX() * scale),
+                    raster.bounds.y - (int)Math.floor(rect.getY() * scale), null);
+            graphics.dispose();
+        }
+        return images;
+    }
+
+    // a cached raster of the page that covers bounds, or a new one of bounds
+    private Raster raster(int pageIndex, Rectangle bounds) throws IOException {
+        Raster raster = rasters.get(pageIndex, resolutionDotPerInch, bounds);
+        if (raster == null) {
+            double scale = (double)resolutionDotPerInch / POINTS_IN_INCH;
+            Rectangle2D rect = new Rectangle2D.Double(bounds.x / scale, bounds.y / scale, bounds.width / scale, bounds.height / scale);
+            BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = createGraphics(image, rect);
+            renderer.renderPageToGraphics(pageIndex, graphics);
+            graphics.dispose();
+            raster = new Raster(pageIndex, resolutionDotPerInch, bounds, image);
+            rasters.put(raster);
+        }
+        return raster;
     }
 
     private BufferedImage createImage(Rectangle2D rect) {
-        double scale = resolutionDotPerInch / POINTS_IN_INCH;
+        Dimension size = imageSize(rect, resolutionDotPerInch);
+        return new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    static Dimension imageSize(Rectangle2D rect, int resolutionDotPerInch) {
+        double scale = (double)resolutionDotPerInch / POINTS_IN_INCH;
         double bitmapWidth  = rect.getWidth()  * scale;
         double bitmapHeight = rect.getHeight() * scale;
-        return new BufferedImage((int)bitmapWidth, (int)bitmapHeight, BufferedImage.TYPE_INT_RGB);
+        return new Dimension((int)bitmapWidth, (int)bitmapHeight);
     }
 
     private Graphics2D createGraphics(BufferedImage image, Rectangle2D rect) {
-        double scale = resolutionDotPerInch / POINTS_IN_INCH;
+        double scale = (double)resolutionDotPerInch / POINTS_IN_INCH;
         AffineTransform transform = AffineTransform.getScaleInstance(scale, scale);
         transform.concatenate(AffineTransform.getTranslateInstance(-rect.getX(), -rect.getY()));
 
@@ -65,4 +130,46 @@ public class RegionPDFRenderer {
         graphics.setTransform(transform);
         return graphics;
     }
-}
\ No newline at end of file
+
+    // pixels of a page at a resolution, starting at bounds.x, bounds.y
+    static class Raster {
+        final int pageIndex;
+        final int resolutionDotPerInch;
+        final Rectangle bounds;
+        final BufferedImage image;
+
+        Raster(int pageIndex, int resolutionDotPerInch, Rectangle bounds, BufferedImage image) {
+            this.pageIndex = pageIndex;
+            this.resolutionDotPerInch = resolutionDotPerInch;
+            this.bounds = bounds;
+            this.image = image;
+        }
+    }
+
+    // least recently used rasters are dropped beyond maxRasters
+    public static class RasterCache {
+        private final int maxRasters;
+        private final LinkedList<Raster> rasters = new LinkedList<>(); // most recently used first
+
+        public RasterCache(int maxRasters) {
+            this.maxRasters = maxRasters;
+        }
+
+        synchronized Raster get(int pageIndex, int resolutionDotPerInch, Rectangle bounds) {
+            for (Iterator<Raster> it = rasters.iterator(); it.hasNext(); ) {
+                Raster r = it.next();
+                if (r.pageIndex == pageIndex && r.resolutionDotPerInch == resolutionDotPerInch && r.bounds.contains(bounds)) {
+                    it.remove();
+                    rasters.addFirst(r);
+                    return r;
+                }
+            }
+            return null;
+        }
+
+        synchronized void put(Raster raster) {
+            rasters.addFirst(raster);
+            while (rasters.size() > maxRasters) rasters.removeLast();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+// renders pages and regions of one document on a worker pool and writes them as PNG files.
+// PDFRenderer is not thread-safe, so every worker renders with its own document handle.
+// submit() blocks while the images in flight would exceed the memory budget,
+// and images are returned to a pool by size once they are written.
+// pooled images stay within the budget, a submit() that is short of it drops them, least recently used size first.
+public class RenderService implements Closeable {
+
+    static final int KB = 1024;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path path = Paths.get(args[0]);
+        Path outDir = Paths.get(args[1]);
+        int dpi = 72, threads = Runtime.getRuntime().availableProcessors();
+        long maxMemory = 256;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("-dpi")) dpi = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-maxMemory")) maxMemory = Long.parseLong(args[++i]);
+        }
+        Files.createDirectories(outDir);
+        try (RenderService service = new RenderService(path, dpi, threads, maxMemory * 1024 * 1024)) {
+            List<Future<Path>> pages = new ArrayList<>();
+            for (int i = 0; i < service.getNumberOfPages(); i++) {
+                pages.add(service.submit(i, null, outDir.resolve("page-" + (i + 1) + ".png")));
+            }
+            for (Future<Path> page : pages) {
+                try {
+                    System.out.println(page.get());
+                }
+                catch (ExecutionException e) {
+                    System.err.println(e.getCause());
+                }
+            }
+        }
+    }
+
+    final Path path;
+    final int resolutionDotPerInch;
+    final PDDocument doc; // page sizes for submit(), only used by the submitting thread
+    final ExecutorService executor;
+    final int budgetKB;
+    int freeKB; // of the budget, neither taken by images in flight nor by pooled ones. guarded by pool
+    final List<PDDocument> handles = new ArrayList<>();
+    final ThreadLocal<RegionPDFRenderer> renderers;
+    // idle images by size, least recently used size first. also the lock of freeKB
+    final Map<Dimension, Deque<BufferedImage>> pool = new LinkedHashMap<>(16, 0.75f, true);
+    int pooled = 0;
+    final int maxPooled;
+
+    public RenderService(Path path, int resolutionDotPerInch, int threads, long maxImageBytes) throws IOException {
+        this.path = path;
+        this.resolutionDotPerInch = resolutionDotPerInch;
+        this.doc = PDDocument.load(path.toFile());
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.budgetKB = (int)Math.min(Integer.MAX_VALUE, maxImageBytes / KB);
+        this.freeKB = budgetKB;
+        this.maxPooled = threads;
+        this.renderers = ThreadLocal.withInitial(() -> {
+            try {
+                PDDocument handle = PDDocument.load(path.toFile());
+                synchronized (handles) {
+                    handles.add(handle);
+                }
+                return new RegionPDFRenderer(handle, resolutionDotPerInch);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public int getNumberOfPages() { return doc.getNumberOfPages(); }
+
+    // renders a region of a page in page coordinates, or the whole page if region is null, into a PNG file
+    public synchronized Future<Path> submit(int pageIndex, Rectangle2D region, Path output) throws InterruptedException {
+        Rectangle2D rect = region != null ? region : pageRect(doc.getPage(pageIndex));
+        Dimension size = RegionPDFRenderer.imageSize(rect, resolutionDotPerInch);
+        int kb = kb(size);
+        reserve(kb);
+        try {
+            return executor.submit(() -> {
+                BufferedImage image = null;
+                try {
+                    image = acquireImage(size);
+                    renderers.get().renderRect(pageIndex, rect, image);
+                    ImageIO.write(image, "png", output.toFile());
+                    return output;
+                }
+                finally {
+                    releaseImage(size, image, kb);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            releaseImage(size, null, kb);
+            throw e;
+        }
+    }
+
+    // the part of the budget that an image of size takes. an image larger than the whole budget runs alone
+    int kb(Dimension size) {
+        return (int)Math.min(budgetKB, ((long)size.width * size.height * 4 + KB - 1) / KB);
+    }
+
+    // takes kb of the budget, dropping pooled images while it is short
+    void reserve(int kb) throws InterruptedException {
+        synchronized (pool) {
+            while (freeKB < kb) {
+                if (!dropEldest()) pool.wait();
+            }
+            freeKB -= kb;
+        }
+    }
+
+    // the page as rendered by PDFRenderer, rotated pages are turned upright
+    static Rectangle2D pageRect(PDPage page) {
+        PDRectangle cropBox = page.getCropBox();
+        boolean turned = page.getRotation() == 90 || page.getRotation() == 270;
+        return new Rectangle2D.Float(0, 0, turned ? cropBox.getHeight() : cropBox.getWidth(),
+                turned ? cropBox.getWidth() : cropBox.getHeight());
+    }
+
+    BufferedImage acquireImage(Dimension size) {
+        BufferedImage image;
+        synchronized (pool) {
+            Deque<BufferedImage> images = pool.get(size);
+            image = images == null ? null : images.poll();
+            if (image != null) {
+                // the image is paid for by the budget taken for the job
+                pooled--;
+                freeKB += kb(size);
+                pool.notifyAll();
+            }
+        }
+        if (image == null) return new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+        // pixels outside the page are not painted, they stay black as in a new image
+        Arrays.fill(((DataBufferInt)image.getRaster().getDataBuffer()).getData(), 0);
+        return image;
+    }
+
+    // pools the image of a job, which keeps the kb taken for it, or gives them back without image
+    void releaseImage(Dimension size, BufferedImage image, int kb) {
+        synchronized (pool) {
+            if (image == null) freeKB += kb;
+            else {
+                if (pooled == maxPooled) dropEldest();
+                pool.computeIfAbsent(size, k -> new ArrayDeque<>()).push(image);
+                pooled++;
+            }
+            // a waiting submit() may drop the pooled image
+            pool.notifyAll();
+        }
+    }
+
+    // drops an image of the size that was not used for the longest time and gives back its budget.
+    // returns false if the pool is empty
+    boolean dropEldest() {
+        Iterator<Map.Entry<Dimension, Deque<BufferedImage>>> eldest = pool.entrySet().iterator();
+        while (eldest.hasNext()) {
+            Map.Entry<Dimension, Deque<BufferedImage>> images = eldest.next();
+            if (images.getValue().poll() != null) {
+                pooled--;
+                freeKB += kb(images.getKey());
+                if (images.getValue().isEmpty()) eldest.remove();
+                return true;
+            }
+            eldest.remove();
+        }
+        return false;
+    }
+
+    // waits for submitted images
+    @Override
+    public void close() throws IOException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (handles) {
+            for (PDDocument handle : handles) handle.close();
+        }
+        doc.close();
+    }
+}
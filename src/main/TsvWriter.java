@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.io.Writer;
+
+// writes pages as tab separated lines, see README.
+// lines are encoded into a reusable buffer that is handed to the Writer in large chunks.
+// StringBuilder.append(float) prints the same digits as String.valueOf(float),
+// but without creating a String for every value.
+public class TsvWriter implements PageWriter {
+
+    static final int FLUSH_SIZE = 8192;
+
+    // breaks of a text, see breaks()
+    static final byte LINE = 1; // starts a line
+    static final byte WORD = 2; // preceded by an empty line
+
+    final Writer output;
+    final ExtractionPlan plan;
+    final StringBuilder line = new StringBuilder(FLUSH_SIZE + 256);
+    char[] chars = new char[FLUSH_SIZE + 256];
+    byte[] breaks = new byte[1024];
+    int pageIndex;
+
+    public TsvWriter(Writer output, ExtractionPlan plan) {
+        this.output = output;
+        this.plan = plan;
+    }
+
+    @Override
+    public void begin() { }
+
+    @Override
+    public void end() throws IOException { flush(); }
+
+    @Override
+    public void writePage(PageBuffer page) throws IOException {
+        breaks = breaks(page, breaks);
+        writePage(page, breaks);
+    }
+
+    // where the lines and words of the texts of a page break, e.g. as read from a binary file without text boxes.
+    // a line is a run of texts with the same vertical bounds, and a word ends at a gap of more than 0.3 average widths.
+    // breaks is grown if needed
+    static byte[] breaks(PageBuffer page, byte[] breaks) {
+        if (breaks.length < page.textCount) breaks = new byte[Math.max(page.textCount, breaks.length * 2)];
+        byte[] kinds = page.kinds;
+        float[] box = page.textBoxes;
+        final int s = PageBuffer.TEXT_STRIDE;
+        int i = 0, t = 0;
+        while (i < page.size) {
+            if (kinds[i] != PageBuffer.TEXT) {
+                i++;
+                continue;
+            }
+            int from = t;
+            float by = box[t * s + 1], bh = box[t * s + 3];
+            while (i < page.size && kinds[i] == PageBuffer.TEXT) {
+                if (box[t * s + 1] != by || box[t * s + 3] != bh) break;
+                i++;
+                t++;
+            }
+
+            float averageW = 0;
+            for (int u = from; u < t; u++) averageW += box[u * s + 2];
+            averageW /= t - from;
+            int prev = from;
+            for (int u = from; u < t; u++) {
+                float expectedX = box[prev * s] + box[prev * s + 2] + averageW * 0.3f;
+                breaks[u] = box[u * s] > expectedX ? WORD : 0;
+                prev = u;
+            }
+            breaks[from] |= LINE;
+        }
+        return breaks;
+    }
+
+    void writePage(PageBuffer page, byte[] breaks) throws IOException {
+        this.pageIndex = page.pageIndex;
+        byte[] kinds = page.kinds;
+        int i = 0, t = 0, d = 0, im = 0;
+        while (i < page.size) {
+            if (kinds[i] == PageBuffer.TEXT) {
+                int from = t;
+                do {
+                    i++;
+                    t++;
+                } while (i < page.size && kinds[i] == PageBuffer.TEXT && (breaks[t] & LINE) == 0);
+                writeText(page, breaks, from, t);
+            }
+            else if (kinds[i] == PageBuffer.DRAW) {
+                // a path ends with a painting operation; a path without one is dropped
+                int from = d;
+                while (i < page.size && kinds[i] == PageBuffer.DRAW) {
+                    String op = page.string(page.op[d]);
+                    i++;
+                    d++;
+                    if (op.endsWith("_PATH")) {
+                        writeDraw(page, from, d);
+                        break;
+                    }
+                }
+            }
+            else {
+                begin(pageIndex).field(page.image(im, 0)).field(page.image(im, 1))
+                        .field(page.image(im, 2)).field(page.image(im, 3));
+                if (plan.imageDir != null) field(page.string(page.imageFile[im]));
+                endLine();
+                i++;
+                im++;
+            }
+        }
+        flushLines();
+    }
+
+    // the texts from..to-1 of a page, which are a line
+    void writeText(PageBuffer page, byte[] breaks, int from, int to) throws IOException {
+        float[] box = page.textBoxes;
+        final int s = PageBuffer.TEXT_STRIDE;
+        for (int t = from; t < to; t++) {
+            if ((breaks[t] & WORD) != 0) emptyLine();
+            begin(pageIndex).field("TEXT").field(page.string(page.unicode[t]));
+            if (plan.bounding) field(box[t * s]).field(box[t * s + 1]).field(box[t * s + 2]).field(box[t * s + 3]);
+            if (plan.glyph) field(box[t * s + 4]).field(box[t * s + 5]).field(box[t * s + 6]).field(box[t * s + 7]);
+            if (plan.fontName) field(page.string(page.font[t]));
+            endLine();
+        }
+        emptyLine();
+    }
+
+    // draws from..to-1 of a page
+    void writeDraw(PageBuffer page, int from, int to) throws IOException {
+        for (int d = from; d < to; d++) {
+            begin(pageIndex).field("DRAW").field(page.string(page.op[d]));
+            for (int v = page.drawStart(d); v < page.drawEnd[d]; v++) field(page.values[v]);
+            endLine();
+        }
+        emptyLine();
+    }
+
+    // first field of a line
+    TsvWriter begin(int pageIndex) {
+        line.append(pageIndex);
+        return this;
+    }
+
+    TsvWriter field(String s) {
+        line.append('\t').append(s);
+        return this;
+    }
+
+    TsvWriter field(float f) {
+        line.append('\t').append(f);
+        return this;
+    }
+
+    void endLine() throws IOException {
+        line.append('\n');
+        if (line.length() >= FLUSH_SIZE) flushLines();
+    }
+
+    void emptyLine() throws IOException {
+        endLine();
+    }
+
+    void flushLines() throws IOException {
+        int length = line.length();
+        if (chars.length < length) chars = new char[length];
+        line.getChars(0, length, chars, 0);
+        output.write(chars, 0, length);
+        line.setLength(0);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushLines();
+        output.flush();
+    }
+}